@@ -0,0 +1,61 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.spinnaker.pipelinebuilder.benchmarks;
+
+import io.spinnaker.pipelinebuilder.json.artifacts.Base64ArtifactDefinition;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures {@link Base64ArtifactDefinition#getReference()}, called every time the artifact is serialized.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class Base64ArtifactBenchmark {
+
+    @Param({"1024", "1048576"})
+    private int contentLength;
+
+    private Base64ArtifactDefinition artifact;
+
+    @Setup
+    public void setUp() {
+        StringBuilder contents = new StringBuilder(contentLength);
+        while (contents.length() < contentLength) {
+            contents.append("replicaCount: 3\nimage: example/app:1.0.0\n");
+        }
+        contents.setLength(contentLength);
+        artifact = Base64ArtifactDefinition.builder()
+            .id("benchmark-artifact")
+            .name("values.yml")
+            .contents(contents.toString())
+            .build();
+    }
+
+    @Benchmark
+    public String getReference() {
+        return artifact.getReference();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.spinnaker.pipelinebuilder.benchmarks;
+
+import io.spinnaker.pipelinebuilder.json.Pipeline;
+import io.spinnaker.pipelinebuilder.json.Stage;
+import io.spinnaker.pipelinebuilder.json.StageIdScope;
+import io.spinnaker.pipelinebuilder.json.contexts.WebhookContext;
+import io.spinnaker.pipelinebuilder.json.stages.model.StageTypes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shared test data for the benchmarks.
+ */
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    static WebhookContext webhookContext() {
+        return WebhookContext.builder()
+            .method(WebhookContext.Method.POST)
+            .url("https://api.example.com/v1/deployments")
+            .headers(Map.of("Accept", "application/json", "Content-Type", "application/json"))
+            .failFastHttpStatuses(List.of(400, 401, 403, 404))
+            .waitForCompletion(true)
+            .statusUrlJsonPath("$.deployment.statusUrl")
+            .statusJsonPath("$.deployment.status")
+            .successStatuses("SUCCEEDED")
+            .terminalStatuses("FAILED,CANCELED")
+            .payload(Map.of("application", "my-application", "version", "${ trigger.parameters.version }"))
+            .build();
+    }
+
+    /**
+     * Builds a DAG where each stage depends on its predecessor and on the stage at half its index,
+     * which mixes long chains with fan-out and fan-in.
+     */
+    static List<Stage> stageGraph(final int stageCount) {
+        try (StageIdScope scope = StageIdScope.open()) {
+            List<Stage> stages = new ArrayList<>(stageCount);
+            for (int i = 0; i < stageCount; i++) {
+                List<Stage> parents = new ArrayList<>(2);
+                if (i > 0) {
+                    parents.add(stages.get(i - 1));
+                }
+                if (i > 2) {
+                    parents.add(stages.get(i / 2));
+                }
+                stages.add(Stage.builder()
+                    .name("Webhook " + i)
+                    .type(StageTypes.WEBHOOK)
+                    .parentStages(parents)
+                    .contextObject(webhookContext())
+                    .failStageAfter(Duration.ofMinutes(10))
+                    .build());
+            }
+            return stages;
+        }
+    }
+
+    static Pipeline pipeline(final List<Stage> stages) {
+        return Pipeline.builder()
+            .name("Benchmark pipeline with " + stages.size() + " stages")
+            .description("Generated by the pipeline-builder benchmarks")
+            .stages(stages)
+            .tags(Map.of("team", "benchmarks"))
+            .build();
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.spinnaker.pipelinebuilder.benchmarks;
+
+import io.spinnaker.pipelinebuilder.json.Pipeline;
+import io.spinnaker.pipelinebuilder.json.Stage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the construction of a {@link Pipeline} from pre-built stages, which is dominated by the validation of the
+ * stage graph (missing parents, duplicate IDs and cycles).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PipelineBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int stageCount;
+
+    private List<Stage> stages;
+
+    @Setup
+    public void setUp() {
+        stages = Fixtures.stageGraph(stageCount);
+    }
+
+    @Benchmark
+    public Pipeline construct() {
+        return Fixtures.pipeline(stages);
+    }
+}
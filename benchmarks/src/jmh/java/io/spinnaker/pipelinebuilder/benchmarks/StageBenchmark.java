@@ -0,0 +1,80 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.spinnaker.pipelinebuilder.benchmarks;
+
+import io.spinnaker.pipelinebuilder.json.Stage;
+import io.spinnaker.pipelinebuilder.json.contexts.WebhookContext;
+import io.spinnaker.pipelinebuilder.json.stages.model.StageTypes;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the construction of a single {@link Stage}, with and without a context object.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StageBenchmark {
+
+    private Map<String, Object> contextMap;
+    private WebhookContext contextObject;
+
+    @Setup
+    public void setUp() {
+        contextObject = Fixtures.webhookContext();
+        contextMap = Map.of("method", "POST",
+            "url", "https://api.example.com/v1/deployments",
+            "waitForCompletion", true,
+            "payload", Map.of("application", "my-application"));
+    }
+
+    @Benchmark
+    public Stage withoutContext() {
+        return Stage.builder()
+            .id("1")
+            .name("Wait")
+            .type(StageTypes.WAIT)
+            .build();
+    }
+
+    @Benchmark
+    public Stage withContextMap() {
+        return Stage.builder()
+            .id("1")
+            .name("Webhook")
+            .type(StageTypes.WEBHOOK)
+            .context(contextMap)
+            .build();
+    }
+
+    @Benchmark
+    public Stage withContextObject() {
+        return Stage.builder()
+            .id("1")
+            .name("Webhook")
+            .type(StageTypes.WEBHOOK)
+            .contextObject(contextObject)
+            .build();
+    }
+}
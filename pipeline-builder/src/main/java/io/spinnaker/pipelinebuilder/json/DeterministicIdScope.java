@@ -0,0 +1,107 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.spinnaker.pipelinebuilder.json;
+
+import io.spinnaker.pipelinebuilder.pipelines.JsonPipelineBuilder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Derives the default IDs of triggers, expected artifacts and artifacts from
+ * a seed instead of generating random UUIDs, for the duration of a pipeline
+ * build.
+ *
+ * <p>Without a scope, objects built without an explicit ID get a random UUID,
+ * so every build of the same pipeline produces different JSON. While a scope
+ * is open on the current thread, the n-th object of each kind gets a name-based
+ * UUID computed from the seed, its kind and n. As long as a pipeline creates
+ * its objects in the same order, its IDs are the same on every build, and
+ * generating them does not use any source of entropy.</p>
+ *
+ * <p>{@link JsonPipelineBuilder#build()} opens a scope seeded with the pipeline
+ * ID around {@code buildPipeline()} when deterministic IDs are enabled with
+ * {@link JsonPipelineBuilder#setDeterministicIds}. Scopes can also be opened
+ * explicitly:</p>
+ * <pre>
+ * try (DeterministicIdScope scope = DeterministicIdScope.open("my-pipeline")) {
+ *     Trigger trigger = CronTrigger.builder().cronExpression("0 0 * * * ?").build(); // same ID every time
+ * }
+ * </pre>
+ *
+ * <p>Like {@link StageIdScope}, a scope belongs to the thread that opened it,
+ * must be closed on that thread, and can be nested. Objects created outside any
+ * scope (for example in a field initializer of a builder) still get random IDs.
+ * Inserting a new trigger before existing ones changes the IDs of the triggers
+ * that follow it; set explicit IDs where references to them must stay stable.</p>
+ */
+public final class DeterministicIdScope implements AutoCloseable {
+    private static final ThreadLocal<DeterministicIdScope> currentScope = new ThreadLocal<>();
+
+    private final DeterministicIdScope enclosingScope;
+    private final String seed;
+    private final Map<String, Integer> nextOrdinals = new HashMap<>(); // only accessed by the thread owning the scope
+
+    private DeterministicIdScope(final DeterministicIdScope enclosingScope, final String seed) {
+        this.enclosingScope = enclosingScope;
+        this.seed = seed;
+    }
+
+    /**
+     * Opens a new scope on the current thread; default IDs generated on this thread are derived from the seed until
+     * it is closed.
+     *
+     * @param seed a string identifying the pipeline, typically its ID
+     * @return the new scope, to be closed once the pipeline has been built
+     */
+    public static DeterministicIdScope open(final String seed) {
+        if (seed == null) {
+            throw new IllegalArgumentException("Deterministic ID scopes need a seed");
+        }
+        DeterministicIdScope scope = new DeterministicIdScope(currentScope.get(), seed);
+        currentScope.set(scope);
+        return scope;
+    }
+
+    /**
+     * Generates the default ID of an object that was built without one.
+     *
+     * @param kind the kind of object, e.g. "trigger"; each kind is numbered separately
+     * @return an ID derived from the seed of the current scope, or a random UUID if no scope is open on this thread
+     */
+    public static String nextId(final String kind) {
+        DeterministicIdScope scope = currentScope.get();
+        if (scope == null) {
+            return UUID.randomUUID().toString();
+        }
+        int ordinal = scope.nextOrdinals.merge(kind, 1, Integer::sum);
+        return UUID.nameUUIDFromBytes((scope.seed + "/" + kind + "/" + ordinal).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    @Override
+    public void close() {
+        if (currentScope.get() != this) {
+            throw new IllegalStateException("Deterministic ID scopes must be closed on the thread that opened them, in reverse order");
+        }
+        if (enclosingScope == null) {
+            currentScope.remove();
+        } else {
+            currentScope.set(enclosingScope);
+        }
+    }
+}
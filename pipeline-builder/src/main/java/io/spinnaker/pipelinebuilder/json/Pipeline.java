@@ -19,42 +19,39 @@ package io.spinnaker.pipelinebuilder.json;
 import io.spinnaker.pipelinebuilder.exceptions.PipelineBuilderException;
 import io.spinnaker.pipelinebuilder.json.artifacts.ExpectedArtifact;
 import io.spinnaker.pipelinebuilder.json.expressions.ConditionalExpression;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonHelper;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonOutputMode;
 import io.spinnaker.pipelinebuilder.json.helpers.ListHelpers;
 import io.spinnaker.pipelinebuilder.json.notifications.Notification;
 import io.spinnaker.pipelinebuilder.json.notifications.NotificationEvent;
 import io.spinnaker.pipelinebuilder.json.notifications.NotificationLevel;
+import io.spinnaker.pipelinebuilder.json.notifications.NotificationList;
 import io.spinnaker.pipelinebuilder.json.triggers.Trigger;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
-import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.MapperFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.google.common.base.Joiner;
-import com.google.common.collect.Sets;
-import com.google.common.collect.Sets.SetView;
-import com.google.common.graph.GraphBuilder;
-import com.google.common.graph.Graphs;
-import com.google.common.graph.MutableGraph;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.stream.Collectors;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Getter;
-import lombok.Setter;
 
 @Getter
 @JsonInclude(Include.NON_EMPTY) // do not serialize null fields
 public class Pipeline {
 
     // these are not provided by the builder
-    @Getter @Setter private String id;
-    @Getter @Setter private String application;
+    @Getter private String id;
+    @Getter private String application;
 
     // no default value
     private String name;
@@ -76,6 +73,9 @@ public class Pipeline {
     private List<String> roles;
     private List<PipelineTag> tags;
 
+    // serialized JSON per output mode, indexed by ordinal; null until the pipeline is sealed
+    @JsonIgnore @Getter(AccessLevel.NONE) private volatile AtomicReferenceArray<byte[]> serializedJson;
+
     @Builder
     public Pipeline(String name, String lastModifiedBy, String description, Boolean keepWaitingPipelines, Boolean limitConcurrent, Integer maxConcurrentExecutions,
         Stage stage, List<Stage> stages, PipelineParameter parameter, List<PipelineParameter> parameters, Trigger trigger, List<Trigger> triggers,
@@ -95,15 +95,25 @@ public class Pipeline {
         this.stages = ListHelpers.listWithOneOf("stage", stage, stages, Collections.emptyList());
         this.parameterConfig = ListHelpers.listWithOneOf("parameter", parameter, parameters, null);
         this.triggers = ListHelpers.listWithOneOf("trigger", trigger, triggers, Collections.emptyList());
-        this.notifications = ListHelpers.listWithOneOf("notification", notification, notifications, null);
+        List<Notification> resolvedNotifications = ListHelpers.listWithOneOf("notification", notification, notifications, null);
+        this.notifications = resolvedNotifications != null ? NotificationList.of(NotificationLevel.PIPELINE, resolvedNotifications) : null;
         this.expectedArtifacts = ListHelpers.listWithOneOf("expectedArtifacts", expectedArtifact, expectedArtifacts, null);
         this.locked = locked;
         this.roles = roles;
         this.tags = tags != null ? mapToListOfTags(tags) : null;
 
         validateNotificationTypes(this.notifications);
-        validateStagesAreAllPresentOnce(this.stages);
-        detectLoopsInStageLinks(this.stages);
+        StageGraphValidator.validate(this.stages); // missing parents, duplicate stages, and cycles
+    }
+
+    public void setId(final String id) {
+        checkNotSealed();
+        this.id = id;
+    }
+
+    public void setApplication(final String application) {
+        checkNotSealed();
+        this.application = application;
     }
 
     private List<PipelineTag> mapToListOfTags(final Map<String, String> tags) {
@@ -121,67 +131,190 @@ public class Pipeline {
         }
     }
 
-    private void validateStagesAreAllPresentOnce(final List<Stage> stages) {
-        Set<String> stageIds = new HashSet<>();
-        Set<String> requiredIds = new HashSet<>();
-        stages.forEach(stage -> {
-            stageIds.add(stage.getId());
-            requiredIds.addAll(stage.getParentIds());
-        });
-        SetView<String> requiredIdsNotInStageList = Sets.difference(requiredIds, stageIds);
-        if (!requiredIdsNotInStageList.isEmpty()) {
-            throw new IllegalArgumentException("Some stages are used as parents but not present in the list of stages for the pipeline. Ids: " + Joiner.on(",").join(requiredIdsNotInStageList));
+    /**
+     * Computes the derived JSON fields of the parameters, notifications and embedded artifacts of the pipeline and of
+     * its stages once, so that serializing the pipeline several times (to hash, compare, write and upload it) does not
+     * rebuild them each time. The lists and maps given to the builders must not be modified after this call.
+     *
+     * @return this pipeline
+     */
+    public Pipeline freeze() {
+        if (parameterConfig != null) {
+            parameterConfig.forEach(PipelineParameter::freeze);
         }
-        if (stages.size() != stageIds.size()) {
-            String repeatedIds = stages.stream()
-                .collect(Collectors.groupingBy(Stage::getId)) // group by stage ID
-                .entrySet().stream()
-                .filter(entry -> entry.getValue().size() > 1) // find duplicates
-                .map(Map.Entry::getKey)
-                .collect(Collectors.joining(", "));
-            throw new IllegalArgumentException("Some stages appear multiple times. Ids: " + repeatedIds);
+        if (notifications != null) {
+            notifications.forEach(Notification::freeze);
         }
+        if (expectedArtifacts != null) {
+            expectedArtifacts.forEach(ExpectedArtifact::freeze);
+        }
+        stages.forEach(Stage::freeze);
+        return this;
     }
 
     /**
-     * Ensures there is no circular dependency between stages.
+     * Freezes the pipeline and locks its own fields: the lists of stages, triggers, parameters, artifacts, roles and
+     * tags are copied, so that modifying the lists given to the builder no longer changes the pipeline, and
+     * {@link #setId} and {@link #setApplication} throw an {@link IllegalStateException}. The JSON of a sealed pipeline
+     * is serialized at most once per {@link JsonOutputMode} and kept as UTF-8 bytes, so that hashing, comparing,
+     * writing and uploading it does not serialize it again.
+     *
+     * <p>Sealing is shallow: the stages, triggers and other elements are not copied, and neither are the values of
+     * the stage contexts. The maps and lists given as context must not be modified afterwards, or the cached JSON
+     * would no longer match the pipeline. Seal the pipeline once its ID and application are set, e.g. after
+     * {@code JsonPipelineBuilder.build()}.</p>
+     *
+     * @return this pipeline
      */
-    private void detectLoopsInStageLinks(final List<Stage> stages) {
-        MutableGraph<String> graph = GraphBuilder.directed()
-            .allowsSelfLoops(false)
-            .expectedNodeCount(stages.size())
-            .build();
-        stages.forEach(stage -> {
-            graph.addNode(stage.getId());
-            stage.getParentIds().forEach(parentId -> graph.putEdge(stage.getId(), parentId));
-        });
-        if (Graphs.hasCycle(graph)) {
-            throw new IllegalArgumentException("Circular dependency found among the stages");
+    public synchronized Pipeline seal() {
+        if (serializedJson != null) {
+            return this;
         }
+        stages = List.copyOf(stages);
+        triggers = List.copyOf(triggers);
+        parameterConfig = copyOfNullable(parameterConfig);
+        expectedArtifacts = copyOfNullable(expectedArtifacts);
+        roles = copyOfNullable(roles);
+        tags = copyOfNullable(tags);
+        freeze(); // notifications are already an immutable NotificationList
+        serializedJson = new AtomicReferenceArray<>(JsonOutputMode.values().length);
+        return this;
     }
 
-    @JsonProperty("notifications")
-    public List<Notification> getNotifications() {
-        if (notifications != null) {
-            notifications.forEach(n -> n.setLevel(NotificationLevel.PIPELINE));
+    /**
+     * @return whether {@link #seal()} was called on this pipeline
+     */
+    @JsonIgnore
+    public boolean isSealed() {
+        return serializedJson != null;
+    }
+
+    private static <T> List<T> copyOfNullable(final List<T> list) {
+        return list != null ? List.copyOf(list) : null;
+    }
+
+    private void checkNotSealed() {
+        if (serializedJson != null) {
+            throw new IllegalStateException("Pipeline \"" + name + "\" is sealed and can no longer be modified");
         }
-        return notifications;
     }
 
     /**
-     * Serializes the pipeline as JSON.
+     * @return the cached JSON for this mode, serializing it on first use, or null if the pipeline is not sealed
+     */
+    private byte[] sealedJson(final JsonOutputMode mode) {
+        final AtomicReferenceArray<byte[]> cache = serializedJson;
+        if (cache == null) {
+            return null;
+        }
+        byte[] json = cache.get(mode.ordinal());
+        if (json == null) {
+            try {
+                json = JsonHelper.toJsonBytes(this, mode, true);
+            } catch (JsonProcessingException e) {
+                throw new PipelineBuilderException("Failed to serialize pipeline to JSON", e);
+            }
+            // concurrent callers may serialize the pipeline twice, but they all produce the same bytes
+            cache.compareAndSet(mode.ordinal(), null, json);
+        }
+        return json;
+    }
+
+    /**
+     * Serializes the pipeline as indented JSON.
      *
      * @return the JSON representation of the pipeline
      * @throws PipelineBuilderException if the pipeline cannot be serialized
      */
     public String toJson() {
-        ObjectMapper objectMapper = new ObjectMapper();
+        return toJson(JsonOutputMode.PRETTY);
+    }
+
+    /**
+     * Serializes the pipeline as JSON. Properties are sorted alphabetically in all modes. A {@linkplain #seal() sealed}
+     * pipeline is only serialized the first time each mode is requested.
+     *
+     * @param mode how to format the output, e.g. {@link JsonOutputMode#CANONICAL} to compute a content hash
+     * @return the JSON representation of the pipeline
+     * @throws PipelineBuilderException if the pipeline cannot be serialized
+     */
+    public String toJson(final JsonOutputMode mode) {
+        final byte[] json = sealedJson(mode);
+        if (json != null) {
+            return new String(json, StandardCharsets.UTF_8);
+        }
+        try {
+            return JsonHelper.toJson(this, mode, true);
+        } catch (JsonProcessingException e) {
+            throw new PipelineBuilderException("Failed to serialize pipeline to JSON", e);
+        }
+    }
+
+    /**
+     * Streams the pipeline as UTF-8 encoded JSON, in the same form as {@link #toJson()}, without building the
+     * whole document in memory first. The stream is flushed but not closed.
+     *
+     * @param outputStream where to write the JSON
+     * @throws PipelineBuilderException if the pipeline cannot be serialized
+     * @throws IOException if writing to the stream fails
+     */
+    public void writeJson(final OutputStream outputStream) throws IOException {
+        writeJson(outputStream, JsonOutputMode.PRETTY);
+    }
+
+    /**
+     * Streams the pipeline as UTF-8 encoded JSON, in the same form as {@link #toJson(JsonOutputMode)}. The stream is
+     * flushed but not closed.
+     *
+     * @param outputStream where to write the JSON
+     * @param mode how to format the output
+     * @throws PipelineBuilderException if the pipeline cannot be serialized
+     * @throws IOException if writing to the stream fails
+     */
+    public void writeJson(final OutputStream outputStream, final JsonOutputMode mode) throws IOException {
+        final byte[] json = sealedJson(mode);
+        if (json != null) {
+            outputStream.write(json);
+            outputStream.flush();
+            return;
+        }
+        try {
+            JsonHelper.writeJson(outputStream, this, mode, true);
+        } catch (JsonProcessingException e) {
+            throw new PipelineBuilderException("Failed to serialize pipeline to JSON", e);
+        }
+    }
+
+    /**
+     * Streams the pipeline as JSON, in the same form as {@link #toJson()}, without building the whole document in
+     * memory first. The writer is flushed but not closed.
+     *
+     * @param writer where to write the JSON
+     * @throws PipelineBuilderException if the pipeline cannot be serialized
+     * @throws IOException if writing to the writer fails
+     */
+    public void writeJson(final Writer writer) throws IOException {
+        writeJson(writer, JsonOutputMode.PRETTY);
+    }
+
+    /**
+     * Streams the pipeline as JSON, in the same form as {@link #toJson(JsonOutputMode)}. The writer is flushed but
+     * not closed.
+     *
+     * @param writer where to write the JSON
+     * @param mode how to format the output
+     * @throws PipelineBuilderException if the pipeline cannot be serialized
+     * @throws IOException if writing to the writer fails
+     */
+    public void writeJson(final Writer writer, final JsonOutputMode mode) throws IOException {
+        final byte[] json = sealedJson(mode);
+        if (json != null) {
+            writer.write(new String(json, StandardCharsets.UTF_8));
+            writer.flush();
+            return;
+        }
         try {
-            return objectMapper.setConfig(objectMapper.getSerializationConfig()
-                    .with(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
-                    .with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS))
-                .writerWithDefaultPrettyPrinter()
-                .writeValueAsString(this);
+            JsonHelper.writeJson(writer, this, mode, true);
         } catch (JsonProcessingException e) {
             throw new PipelineBuilderException("Failed to serialize pipeline to JSON", e);
         }
@@ -20,9 +20,11 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
@@ -39,6 +41,8 @@ public class PipelineParameter {
     private final String description;
     @JsonProperty("default") private final String defaultValue;
     @JsonIgnore private final List<String> optionsList; // not named `options` since we use a method to serialize this field
+    /** The wrapped options computed by {@link #freeze()}, null until then. */
+    @JsonIgnore @Getter(AccessLevel.NONE) @EqualsAndHashCode.Exclude private volatile List<ParameterValue> frozenOptions;
 
     @Builder // same order as in the UI
     public PipelineParameter(final String name, final String label, final Boolean required, final Boolean pinned,
@@ -52,7 +56,25 @@ public class PipelineParameter {
         this.optionsList = options;
     }
 
+    /**
+     * Wraps the options once and keeps them, so that serializing the parameter again does not allocate new wrappers.
+     * The list of options must not be modified after this call, since the changes would not be serialized.
+     *
+     * @return this parameter
+     */
+    public PipelineParameter freeze() {
+        if (frozenOptions == null && optionsList != null) {
+            frozenOptions = Collections.unmodifiableList(wrapOptions());
+        }
+        return this;
+    }
+
     @JsonProperty("options") public List<ParameterValue> getWrappedOptions() {
+        List<ParameterValue> frozen = frozenOptions;
+        return frozen != null ? frozen : wrapOptions();
+    }
+
+    private List<ParameterValue> wrapOptions() {
         return optionsList == null ? null // skip serializing if not set, otherwise wrap in objects with single `value` field.
             : optionsList.stream().map(ParameterValue::new).collect(Collectors.toList());
     }
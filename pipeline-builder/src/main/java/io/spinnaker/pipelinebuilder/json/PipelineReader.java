@@ -0,0 +1,519 @@
+/*
+ * Copyright 2023 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.spinnaker.pipelinebuilder.json;
+
+import io.spinnaker.pipelinebuilder.exceptions.PipelineBuilderException;
+import io.spinnaker.pipelinebuilder.json.artifacts.ArtifactDefinition;
+import io.spinnaker.pipelinebuilder.json.artifacts.ArtifactType;
+import io.spinnaker.pipelinebuilder.json.artifacts.Base64ArtifactDefinition;
+import io.spinnaker.pipelinebuilder.json.artifacts.CustomObjectArtifactDefinition;
+import io.spinnaker.pipelinebuilder.json.artifacts.DockerImageArtifactDefinition;
+import io.spinnaker.pipelinebuilder.json.artifacts.ExpectedArtifact;
+import io.spinnaker.pipelinebuilder.json.artifacts.GitHubArtifactDefinition;
+import io.spinnaker.pipelinebuilder.json.artifacts.GitRepoArtifactDefinition;
+import io.spinnaker.pipelinebuilder.json.artifacts.HelmArtifactDefinition;
+import io.spinnaker.pipelinebuilder.json.artifacts.HttpArtifactDefinition;
+import io.spinnaker.pipelinebuilder.json.artifacts.KubernetesConfigMapArtifactDefinition;
+import io.spinnaker.pipelinebuilder.json.artifacts.KubernetesDeploymentArtifactDefinition;
+import io.spinnaker.pipelinebuilder.json.artifacts.KubernetesReplicaSetArtifactDefinition;
+import io.spinnaker.pipelinebuilder.json.artifacts.KubernetesSecretArtifactDefinition;
+import io.spinnaker.pipelinebuilder.json.enums.FailureStrategy;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonHelper;
+import io.spinnaker.pipelinebuilder.json.notifications.EmailNotification;
+import io.spinnaker.pipelinebuilder.json.notifications.Notification;
+import io.spinnaker.pipelinebuilder.json.notifications.NotificationEvent;
+import io.spinnaker.pipelinebuilder.json.notifications.NotificationType;
+import io.spinnaker.pipelinebuilder.json.notifications.SlackNotification;
+import io.spinnaker.pipelinebuilder.json.triggers.CronTrigger;
+import io.spinnaker.pipelinebuilder.json.triggers.DockerTrigger;
+import io.spinnaker.pipelinebuilder.json.triggers.GitTrigger;
+import io.spinnaker.pipelinebuilder.json.triggers.GitTriggerSource;
+import io.spinnaker.pipelinebuilder.json.triggers.HelmTrigger;
+import io.spinnaker.pipelinebuilder.json.triggers.PipelineStatus;
+import io.spinnaker.pipelinebuilder.json.triggers.PipelineTrigger;
+import io.spinnaker.pipelinebuilder.json.triggers.Trigger;
+import io.spinnaker.pipelinebuilder.json.triggers.TriggerType;
+import io.spinnaker.pipelinebuilder.json.triggers.WebhookTrigger;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Function;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Reads pipelines in the JSON format used by Spinnaker back into {@link Pipeline} objects.
+ *
+ * <p>Pipelines are created with the same builders as generated pipelines, so they are validated the same way. Triggers,
+ * artifacts and notifications are mapped to the class matching their {@code type} field. Stages keep every field
+ * other than their ID, name, type, parents and failure options in their context, as plain maps, lists and values,
+ * so that they are serialized back unchanged. Pipeline fields that are not part of the model, like {@code updateTs}
+ * or {@code index}, are ignored.</p>
+ *
+ * <h3>Example</h3>
+ * <pre>
+ * Pipeline pipeline = PipelineReader.readPipeline(Files.readString(path));
+ *
+ * try (PipelineReader.PipelineIterator pipelines = PipelineReader.readPipelines(inputStream)) {
+ *     while (pipelines.hasNext()) {
+ *         Pipeline next = pipelines.next(); // only one pipeline is held in memory at a time
+ *     }
+ * }
+ * </pre>
+ */
+@UtilityClass   // can't be instantiated
+public class PipelineReader {
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<Map<String, Object>>() {};
+    private static final TypeReference<Map<String, String>> STRING_MAP_TYPE = new TypeReference<Map<String, String>>() {};
+
+    /** Stage fields passed to the stage builder, all others go to the context. */
+    private static final Set<String> STAGE_BUILDER_FIELDS = Set.of("refId", "name", "type", "requisiteStageRefIds",
+        "failOnFailedExpressions", "failPipeline", "continuePipeline", "completeOtherBranchesThenFail");
+    /** Failure options that stop the stage builder from applying the default failure strategy. */
+    private static final FailureStrategy NO_FAILURE_OPTIONS = FailureStrategy.buildCustom(null, null, null);
+
+    /**
+     * @param json a single pipeline
+     * @return the pipeline
+     * @throws IOException if the JSON cannot be parsed
+     * @throws PipelineBuilderException if the JSON does not describe a valid pipeline
+     */
+    public static Pipeline readPipeline(final String json) throws IOException {
+        return readPipeline(JsonHelper.getObjectMapper().readTree(json));
+    }
+
+    /**
+     * @param node a single pipeline
+     * @return the pipeline
+     * @throws PipelineBuilderException if the JSON does not describe a valid pipeline
+     */
+    public static Pipeline readPipeline(final JsonNode node) {
+        if (!node.isObject()) {
+            throw new PipelineBuilderException("Expected a pipeline object, got " + node.getNodeType());
+        }
+        try {
+            Pipeline pipeline = Pipeline.builder()
+                .name(text(node, "name"))
+                .description(text(node, "description"))
+                .lastModifiedBy(text(node, "lastModifiedBy"))
+                .keepWaitingPipelines(bool(node, "keepWaitingPipelines"))
+                .limitConcurrent(bool(node, "limitConcurrent"))
+                .maxConcurrentExecutions(node.hasNonNull("maxConcurrentExecutions") ? node.get("maxConcurrentExecutions").asInt() : null)
+                .disabled(bool(node, "disabled"))
+                .conditionalOnExpression(node.hasNonNull("stageEnabled") ? text(node.get("stageEnabled"), "expression") : null)
+                .stages(list(node, "stages", PipelineReader::readStage))
+                .parameters(list(node, "parameterConfig", PipelineReader::readParameter))
+                .triggers(list(node, "triggers", PipelineReader::readTrigger))
+                .notifications(list(node, "notifications", PipelineReader::readNotification))
+                .expectedArtifacts(list(node, "expectedArtifacts", PipelineReader::readExpectedArtifact))
+                .locked(node.hasNonNull("locked") ? readLock(node.get("locked")) : null)
+                .roles(list(node, "roles", JsonNode::asText))
+                .tags(readTags(node))
+                .build();
+            pipeline.setId(text(node, "id"));
+            pipeline.setApplication(text(node, "application"));
+            return pipeline;
+        } catch (RuntimeException e) { // builders throw IllegalArgumentException or NullPointerException
+            throw new PipelineBuilderException(String.format("Failed to read pipeline \"%s\" (%s)", text(node, "name"), text(node, "id")), e);
+        }
+    }
+
+    /**
+     * Iterates over a JSON array of pipelines, such as an export of all the pipelines of an application, reading one
+     * pipeline at a time. The stream is not closed by the iterator.
+     *
+     * @param inputStream UTF-8 encoded JSON, starting with an array
+     * @return an iterator over the pipelines of the array
+     * @throws IOException if the stream does not start with a JSON array
+     */
+    public static PipelineIterator readPipelines(final InputStream inputStream) throws IOException {
+        return new PipelineIterator(readArray(inputStream, (parser, position) -> JsonHelper.getObjectMapper().readTree(parser)));
+    }
+
+    /**
+     * Iterates over the elements of a JSON array, reading one element at a time with the given reader. The stream is
+     * not closed by the iterator.
+     *
+     * @param inputStream UTF-8 encoded JSON, starting with an array
+     * @param reader reads each element from the parser
+     * @return an iterator over the elements of the array
+     * @throws IOException if the stream does not start with a JSON array
+     */
+    public static <T> ArrayIterator<T> readArray(final InputStream inputStream, final ElementReader<T> reader) throws IOException {
+        JsonParser parser = JsonHelper.getObjectMapper().getFactory().createParser(inputStream);
+        parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            parser.close();
+            throw new IOException("Expected a JSON array of pipelines");
+        }
+        return new ArrayIterator<>(parser, reader);
+    }
+
+    /**
+     * Reads one element of the array passed to {@link #readArray(InputStream, ElementReader)}.
+     */
+    @FunctionalInterface
+    public interface ElementReader<T> {
+        /**
+         * @param parser positioned on the first token of the element, which must be fully consumed
+         * @param position the index of the element in the array
+         * @return the element, never null
+         */
+        T read(JsonParser parser, int position) throws IOException;
+    }
+
+    /**
+     * Iterates over the elements of a JSON array. Each element is read when {@link #hasNext()} is called, and
+     * failures to parse the JSON are thrown from that method as {@link UncheckedIOException}.
+     */
+    public static final class ArrayIterator<T> implements Iterator<T>, Closeable {
+        private final JsonParser parser;
+        private final ElementReader<T> reader;
+        private T next;
+        private int position;
+        private boolean done;
+
+        private ArrayIterator(final JsonParser parser, final ElementReader<T> reader) {
+            this.parser = parser;
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done) {
+                try {
+                    if (parser.nextToken() == JsonToken.END_ARRAY) {
+                        done = true;
+                    } else {
+                        next = reader.read(parser, position++);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to parse pipeline", e);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T element = next;
+            next = null;
+            return element;
+        }
+
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
+    }
+
+    /**
+     * Iterates over the elements of a JSON array of pipelines. Each pipeline is parsed when {@link #hasNext()} is
+     * called, and failures to parse the JSON are thrown from that method as {@link UncheckedIOException}.
+     */
+    public static final class PipelineIterator implements Iterator<Pipeline>, Closeable {
+        private final ArrayIterator<JsonNode> nodes;
+
+        private PipelineIterator(final ArrayIterator<JsonNode> nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nodes.hasNext();
+        }
+
+        /**
+         * @throws PipelineBuilderException if the element does not describe a valid pipeline; iteration can continue
+         * with the following elements
+         */
+        @Override
+        public Pipeline next() {
+            return readPipeline(nodes.next());
+        }
+
+        @Override
+        public void close() throws IOException {
+            nodes.close();
+        }
+    }
+
+    static Stage readStage(final JsonNode node) {
+        Map<String, Object> context = new LinkedHashMap<>();
+        JsonHelper.getObjectMapper().<Map<String, Object>>convertValue(node, MAP_TYPE).forEach((key, value) -> {
+            if (!STAGE_BUILDER_FIELDS.contains(key)) {
+                context.put(key, value);
+            }
+        });
+        Boolean failOnFailedExpressions = bool(node, "failOnFailedExpressions");
+        Boolean failPipeline = bool(node, "failPipeline");
+        Boolean continuePipeline = bool(node, "continuePipeline");
+        Boolean completeOtherBranchesThenFail = bool(node, "completeOtherBranchesThenFail");
+        boolean noFailureOptions = failOnFailedExpressions == null && failPipeline == null && continuePipeline == null
+            && completeOtherBranchesThenFail == null;
+        return Stage.builder()
+            .id(text(node, "refId"))
+            .name(text(node, "name"))
+            .type(text(node, "type"))
+            .parentStageIds(list(node, "requisiteStageRefIds", JsonNode::asText))
+            .failOnFailedExpressions(failOnFailedExpressions)
+            .failPipeline(failPipeline)
+            .continuePipeline(continuePipeline)
+            .completeOtherBranchesThenFail(completeOtherBranchesThenFail)
+            .onFailure(noFailureOptions ? NO_FAILURE_OPTIONS : null) // keeps the stage without any failure option
+            .context(context)
+            .build();
+    }
+
+    static Trigger readTrigger(final JsonNode node) {
+        TriggerType type = enumValue(TriggerType.class, node, "type");
+        String id = text(node, "id");
+        Boolean enabled = bool(node, "enabled");
+        String runAsUser = text(node, "runAsUser");
+        List<String> expectedArtifactIds = list(node, "expectedArtifactIds", JsonNode::asText);
+        switch (type) {
+            case CRON:
+                return CronTrigger.builder()
+                    .id(id).enabled(enabled).runAsUser(runAsUser).expectedArtifactIds(expectedArtifactIds)
+                    .cronExpression(text(node, "cronExpression"))
+                    .build();
+            case DOCKER:
+                return DockerTrigger.builder()
+                    .id(id).enabled(enabled).runAsUser(runAsUser).expectedArtifactIds(expectedArtifactIds)
+                    .organization(text(node, "organization"))
+                    .registry(text(node, "registry"))
+                    .repository(text(node, "repository"))
+                    .tag(text(node, "tag"))
+                    .build();
+            case GIT:
+                return GitTrigger.builder()
+                    .id(id).enabled(enabled).runAsUser(runAsUser).expectedArtifactIds(expectedArtifactIds)
+                    .branch(text(node, "branch"))
+                    .pathConstraint(text(node, "pathConstraint"))
+                    .source(node.hasNonNull("source") ? enumValue(GitTriggerSource.class, node, "source") : null)
+                    .build();
+            case HELM:
+                return HelmTrigger.builder()
+                    .id(id).enabled(enabled).runAsUser(runAsUser).expectedArtifactIds(expectedArtifactIds)
+                    .account(text(node, "account"))
+                    .chart(text(node, "chart"))
+                    .version(text(node, "version"))
+                    .digest(text(node, "digest"))
+                    .build();
+            case PIPELINE:
+                return PipelineTrigger.builder()
+                    .id(id).enabled(enabled).runAsUser(runAsUser).expectedArtifactIds(expectedArtifactIds)
+                    .application(text(node, "application"))
+                    .pipelineId(text(node, "pipeline"))
+                    .pipelineStatuses(list(node, "status", status -> enumValue(PipelineStatus.class, status)))
+                    .build();
+            case WEBHOOK:
+                return WebhookTrigger.builder()
+                    .id(id).enabled(enabled).runAsUser(runAsUser).expectedArtifactIds(expectedArtifactIds)
+                    .source(text(node, "source"))
+                    .payloadConstraints(node.hasNonNull("payloadConstraints")
+                        ? JsonHelper.getObjectMapper().convertValue(node.get("payloadConstraints"), STRING_MAP_TYPE)
+                        : null)
+                    .build();
+            default:
+                throw new IllegalArgumentException("Unsupported trigger type: " + type);
+        }
+    }
+
+    static ExpectedArtifact readExpectedArtifact(final JsonNode node) {
+        return ExpectedArtifact.builder()
+            .id(text(node, "id"))
+            .displayName(text(node, "displayName"))
+            .matchArtifact(node.hasNonNull("matchArtifact") ? readArtifact(node.get("matchArtifact")) : null)
+            .defaultArtifact(node.hasNonNull("defaultArtifact") ? readArtifact(node.get("defaultArtifact")) : null)
+            .useDefaultArtifact(bool(node, "useDefaultArtifact"))
+            .usePriorArtifact(bool(node, "usePriorArtifact"))
+            .build();
+    }
+
+    @SuppressWarnings("deprecation") // CustomObjectArtifactDefinition is still read from existing pipelines
+    static ArtifactDefinition readArtifact(final JsonNode node) {
+        if (!node.hasNonNull("type") && node.path("customKind").asBoolean()) {
+            return new CustomObjectArtifactDefinition(text(node, "id")); // serialized without its type
+        }
+        ArtifactType type = enumValue(ArtifactType.class, node, "type");
+        String id = text(node, "id");
+        String account = text(node, "artifactAccount");
+        String name = text(node, "name");
+        String reference = text(node, "reference");
+        switch (type) {
+            case CUSTOM_OBJECT:
+                return new CustomObjectArtifactDefinition(id);
+            case EMBEDDED_BASE64:
+                return Base64ArtifactDefinition.builder()
+                    .id(id)
+                    .name(name)
+                    .contents(reference)
+                    .shouldEncode(false) // already encoded
+                    .build();
+            case GIT_REPO:
+                return GitRepoArtifactDefinition.builder()
+                    .id(id)
+                    .artifactAccount(account)
+                    .reference(reference)
+                    .version(text(node, "version"))
+                    .subPath(text(node.path("metadata"), "subPath"))
+                    .build();
+            case GITHUB_FILE:
+                return GitHubArtifactDefinition.builder()
+                    .id(id).artifactAccount(account).name(name).reference(reference)
+                    .version(text(node, "version"))
+                    .build();
+            case HELM_CHART:
+                return HelmArtifactDefinition.builder()
+                    .id(id).artifactAccount(account).name(name).reference(reference)
+                    .version(text(node, "version"))
+                    .build();
+            case HTTP_FILE:
+                return HttpArtifactDefinition.builder()
+                    .id(id).artifactAccount(account).name(name).reference(reference)
+                    .build();
+            case DOCKER_IMAGE:
+                return DockerImageArtifactDefinition.builder()
+                    .id(id).artifactAccount(account).name(name).reference(reference)
+                    .build();
+            case KUBERNETES_CONFIGMAP:
+                return new KubernetesConfigMapArtifactDefinition(id, account, name, reference);
+            case KUBERNETES_DEPLOYMENT:
+                return new KubernetesDeploymentArtifactDefinition(id, account, name, reference);
+            case KUBERNETES_REPLICASET:
+                return new KubernetesReplicaSetArtifactDefinition(id, account, name, reference);
+            case KUBERNETES_SECRET:
+                return new KubernetesSecretArtifactDefinition(id, account, name, reference);
+            default:
+                throw new IllegalArgumentException("Unsupported artifact type: " + type);
+        }
+    }
+
+    static Notification readNotification(final JsonNode node) {
+        NotificationType type = enumValue(NotificationType.class, node, "type");
+        // `when` lists all the events, `message` only those with a text
+        Map<NotificationEvent, String> message = new LinkedHashMap<>();
+        for (NotificationEvent event : list(node, "when", when -> enumValue(NotificationEvent.class, when))) {
+            message.put(event, node.path("message").path(event.toJson()).path("text").asText(""));
+        }
+        switch (type) {
+            case EMAIL:
+                return EmailNotification.builder()
+                    .address(text(node, "address"))
+                    .cc(text(node, "cc"))
+                    .message(message)
+                    .build();
+            case SLACK:
+                return SlackNotification.builder()
+                    .channel(text(node, "address"))
+                    .message(message)
+                    .build();
+            default:
+                throw new IllegalArgumentException("Unsupported notification type: " + type);
+        }
+    }
+
+    static PipelineParameter readParameter(final JsonNode node) {
+        return PipelineParameter.builder()
+            .name(text(node, "name"))
+            .label(text(node, "label"))
+            .required(bool(node, "required"))
+            .pinned(bool(node, "pinned"))
+            .description(text(node, "description"))
+            .defaultValue(text(node, "default"))
+            .options(list(node, "options", option -> option.path("value").asText()))
+            .build();
+    }
+
+    private static PipelineLock readLock(final JsonNode node) {
+        return PipelineLock.builder()
+            .allowUnlockUi(node.path("allowUnlockUi").asBoolean())
+            .description(text(node, "description"))
+            .build();
+    }
+
+    private static Map<String, String> readTags(final JsonNode node) {
+        if (!node.hasNonNull("tags")) {
+            return null;
+        }
+        Map<String, String> tags = new LinkedHashMap<>();
+        node.get("tags").forEach(tag -> tags.put(text(tag, "name"), text(tag, "value")));
+        return tags;
+    }
+
+    /**
+     * @return the field as text, or null if it is absent or null
+     */
+    public static String text(final JsonNode node, final String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    private static Boolean bool(final JsonNode node, final String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asBoolean();
+    }
+
+    /**
+     * @return the elements of an array field converted one by one, or null if the field is absent
+     */
+    private static <T> List<T> list(final JsonNode node, final String field, final Function<JsonNode, T> reader) {
+        JsonNode array = node.get(field);
+        if (array == null || array.isNull()) {
+            return null;
+        }
+        if (!array.isArray()) {
+            throw new IllegalArgumentException("Expected an array in field '" + field + "', got " + array.getNodeType());
+        }
+        List<T> values = new ArrayList<>(array.size());
+        array.forEach(element -> values.add(reader.apply(element)));
+        return values;
+    }
+
+    private static <E extends Enum<E>> E enumValue(final Class<E> enumClass, final JsonNode node, final String field) {
+        JsonNode value = node.get(field);
+        if (value == null || value.isNull()) {
+            throw new IllegalArgumentException("Missing field '" + field + "' for " + enumClass.getSimpleName());
+        }
+        return enumValue(enumClass, value);
+    }
+
+    /**
+     * Converts a JSON value with the enum's {@code @JsonValue} method.
+     *
+     * @throws IllegalArgumentException if the value does not match any constant
+     */
+    private static <E extends Enum<E>> E enumValue(final Class<E> enumClass, final JsonNode value) {
+        return JsonHelper.getObjectMapper().convertValue(TextNode.valueOf(value.asText()), enumClass);
+    }
+}
@@ -20,35 +20,81 @@ import io.spinnaker.pipelinebuilder.json.artifacts.ExpectedArtifact;
 import io.spinnaker.pipelinebuilder.json.artifacts.InputArtifact;
 import io.spinnaker.pipelinebuilder.json.contexts.ContextObject;
 import io.spinnaker.pipelinebuilder.json.enums.FailureStrategy;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonFragment;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonFragmentCache;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonHelper;
 import io.spinnaker.pipelinebuilder.json.helpers.ListHelpers;
 import io.spinnaker.pipelinebuilder.json.notifications.Notification;
 import io.spinnaker.pipelinebuilder.json.notifications.NotificationEvent;
 import io.spinnaker.pipelinebuilder.json.notifications.NotificationLevel;
+import io.spinnaker.pipelinebuilder.json.notifications.NotificationList;
 import io.spinnaker.pipelinebuilder.json.restrictions.ExecutionWindow;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.google.common.base.Function;
 import com.google.common.base.Strings;
 import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import lombok.Builder;
-import lombok.Getter;
 
-@Getter
+/**
+ * A stage of a pipeline, serialized as a JSON object.
+ *
+ * <p>A stage is an immutable, read-only {@link Map} of its JSON fields, with
+ * the keys of its context stored at the root level alongside the other
+ * fields. Internally the fields that every stage has, like {@code refId} or
+ * {@code type}, are stored as typed fields, and the others in a pair of arrays
+ * sorted by key, so a stage only takes a fraction of the memory of a
+ * {@link HashMap} with the same entries. Entries are iterated in key order;
+ * calling a method modifying the map throws an
+ * {@link UnsupportedOperationException}.</p>
+ *
+ * <p>A stage reused as is by many pipelines, like the ones built by
+ * {@code CanaryHelper}, can be {@linkplain #share() shared} so that it is only
+ * serialized once.</p>
+ */
 @JsonInclude(Include.NON_EMPTY)
-public class Stage extends HashMap<String, Object> {
-    private static final ObjectMapper objectMapper = new ObjectMapper();
-    private static AtomicInteger nextStageId = new AtomicInteger(1); // generates unique stage IDs
+public class Stage extends AbstractMap<String, Object> implements JsonFragment {
+    private static final TypeReference<Map<String, Object>> CONTEXT_MAP_TYPE = new TypeReference<Map<String, Object>>() {};
+    private static AtomicInteger nextStageId = new AtomicInteger(1); // generates unique stage IDs outside of a StageIdScope
+    private static final long NO_TIMEOUT = Long.MIN_VALUE;
+
+    /** Keys stored in typed fields, sorted; see {@link #getTypedValue(int)}. */
+    private static final String[] TYPED_KEYS = {"completeOtherBranchesThenFail", "continuePipeline", "failOnFailedExpressions",
+        "failPipeline", "name", "refId", "requisiteStageRefIds", "stageTimeoutMs", "type"};
+
+    // well-known fields, null (or NO_TIMEOUT) when absent or when the context provided a value of another type
+    private final String id;
+    private final String name;
+    private final String type;
+    private final List<String> parentIds;
+    private final Boolean failOnFailedExpressions;
+    private final Boolean failPipeline;
+    private final Boolean continuePipeline;
+    private final Boolean completeOtherBranchesThenFail;
+    private final long stageTimeoutMs;
+
+    /** All the other entries, including the context, sorted by key. */
+    private final String[] extraKeys;
+    private final Object[] extraValues;
+
+    private volatile JsonFragmentCache jsonFragmentCache; // null until the stage is shared
 
     @Builder // generates a builder API with only the fields from this constructor; this lets us declare fields that we don't want to include, e.g. `id`
     public Stage(String id, String name, String type,
@@ -59,81 +105,119 @@ public class Stage extends HashMap<String, Object> {
         ExpectedArtifact expectedArtifact, List<ExpectedArtifact> expectedArtifacts,
         String comments, ExecutionWindow restrictExecutionTime) {
 
+        // entries are first collected in a temporary map, so that context keys can replace the ones set here as they always have
+        final Map<String, Object> entries = new HashMap<>();
         String stageId = id != null ? id : nextStageId(); // if `id` is not provided, generates a unique stage ID
         String stageName = Objects.requireNonNull(name, "Stage must have a name");
-        put("name", stageName);
-        put("refId", stageId);
-        put("type", Objects.requireNonNull(type, "Stage must have a type"));
+        entries.put("name", stageName);
+        entries.put("refId", stageId);
+        entries.put("type", Objects.requireNonNull(type, "Stage must have a type"));
         List<String> parentIds = getParentStageIds(parentStageId, parentStageIds, parentStage, parentStages);
         if (parentIds.contains(stageId)) {
             throw new IllegalArgumentException("A stage cannot depend on itself");
         }
-        put("requisiteStageRefIds", parentIds);
+        entries.put("requisiteStageRefIds", Collections.unmodifiableList(parentIds));
         if (failOnFailedExpressions != null) {
-            put("failOnFailedExpressions", failOnFailedExpressions);
+            entries.put("failOnFailedExpressions", failOnFailedExpressions);
         }
         if (failPipeline != null) {
-            put("failPipeline", failPipeline);
+            entries.put("failPipeline", failPipeline);
         }
         if (continuePipeline != null) {
-            put("continuePipeline", continuePipeline);
+            entries.put("continuePipeline", continuePipeline);
         }
         if (completeOtherBranchesThenFail != null) {
-            put("completeOtherBranchesThenFail", completeOtherBranchesThenFail);
+            entries.put("completeOtherBranchesThenFail", completeOtherBranchesThenFail);
         }
         if (!Strings.isNullOrEmpty(conditionalOnExpression)) {
             if (conditionalOnExpression.startsWith("${") && conditionalOnExpression.endsWith("}")) {
                 throw new IllegalArgumentException("Invalid field: 'conditionalOnExpression' should not be wrapped in ${...}");
             }
-            put("stageEnabled", Map.of("expression", conditionalOnExpression, "type", "expression"));
+            entries.put("stageEnabled", Map.of("expression", conditionalOnExpression, "type", "expression"));
         }
         if (Stream.of(failOnFailedExpressions, failPipeline, continuePipeline, completeOtherBranchesThenFail).allMatch(Objects::isNull)) {
-            addFailureOptions(onFailure != null ? onFailure : FailureStrategy.HALT_ENTIRE_PIPELINE); // this is the default in Deck;
+            addFailureOptions(entries, onFailure != null ? onFailure : FailureStrategy.HALT_ENTIRE_PIPELINE); // this is the default in Deck;
         }
         if (failStageAfter != null) {
-            put("stageTimeoutMs", TimeUnit.NANOSECONDS.toMillis(failStageAfter.toNanos()));
+            entries.put("stageTimeoutMs", TimeUnit.NANOSECONDS.toMillis(failStageAfter.toNanos()));
         }
 
         if (notifications != null && !notifications.isEmpty()) {
             validateNotificationTypes(notifications);
-            notifications.forEach(n -> n.setLevel(NotificationLevel.STAGE));
-            put("sendNotifications", true);
-            put("notifications", notifications);
+            entries.put("sendNotifications", true);
+            entries.put("notifications", NotificationList.of(NotificationLevel.STAGE, notifications));
         }
 
         if (inputArtifact != null && inputArtifacts != null) {
             throw new IllegalArgumentException("Invalid field: 'inputArtifact' and 'inputArtifacts' are mutually exclusive");
         } else if (inputArtifact != null) {
-            put("inputArtifact", inputArtifact);
+            entries.put("inputArtifact", inputArtifact);
         } else if (inputArtifacts != null && !inputArtifacts.isEmpty()) {
-            put("inputArtifacts", inputArtifacts);
+            entries.put("inputArtifacts", Collections.unmodifiableList(new ArrayList<>(inputArtifacts)));
         }
 
         List<ExpectedArtifact> resolvedExpectedArtifacts = ListHelpers.listWithOneOf("expectedArtifact", expectedArtifact, expectedArtifacts, null);
         if (resolvedExpectedArtifacts != null && !resolvedExpectedArtifacts.isEmpty()) {
-            put("expectedArtifacts", resolvedExpectedArtifacts);
+            entries.put("expectedArtifacts", Collections.unmodifiableList(new ArrayList<>(resolvedExpectedArtifacts)));
         }
         if (!Strings.isNullOrEmpty(comments)) {
-            put("comments", comments);
+            entries.put("comments", comments);
         }
         if (restrictExecutionTime != null) {
-            put("restrictExecutionDuringTimeWindow", true);
-            put("restrictedExecutionWindow", restrictExecutionTime);
+            entries.put("restrictExecutionDuringTimeWindow", true);
+            entries.put("restrictedExecutionWindow", restrictExecutionTime);
             if (!Strings.isNullOrEmpty(restrictExecutionTime.getWithWarningWhenSkipped())) {
-                put("skipWindowText", restrictExecutionTime.getWithWarningWhenSkipped());
+                entries.put("skipWindowText", restrictExecutionTime.getWithWarningWhenSkipped());
             }
         }
 
         // we store all the keys from the `context` map at the root level of the stage object
-        putAll(buildContextMap(context, contextObject));
+        entries.putAll(buildContextMap(context, contextObject));
+
+        this.id = removeTyped(entries, "refId", String.class);
+        this.name = removeTyped(entries, "name", String.class);
+        this.type = removeTyped(entries, "type", String.class);
+        this.parentIds = removeTyped(entries, "requisiteStageRefIds", List.class);
+        this.failOnFailedExpressions = removeTyped(entries, "failOnFailedExpressions", Boolean.class);
+        this.failPipeline = removeTyped(entries, "failPipeline", Boolean.class);
+        this.continuePipeline = removeTyped(entries, "continuePipeline", Boolean.class);
+        this.completeOtherBranchesThenFail = removeTyped(entries, "completeOtherBranchesThenFail", Boolean.class);
+        Long timeout = removeTyped(entries, "stageTimeoutMs", Long.class);
+        this.stageTimeoutMs = timeout != null ? timeout : NO_TIMEOUT;
+
+        this.extraKeys = entries.keySet().toArray(new String[0]);
+        Arrays.sort(extraKeys);
+        this.extraValues = new Object[extraKeys.length];
+        for (int i = 0; i < extraKeys.length; i++) {
+            extraValues[i] = entries.get(extraKeys[i]);
+        }
+    }
+
+    /**
+     * Removes a well-known key from the entries if its value has the expected type, leaving it among the other
+     * entries otherwise.
+     *
+     * @return the value, or null if the key is absent or has a value of another type
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T removeTyped(final Map<String, Object> entries, final String key, final Class<? super T> valueClass) {
+        Object value = entries.get(key);
+        if (valueClass.isInstance(value)) {
+            entries.remove(key);
+            return (T) value;
+        }
+        return null;
     }
 
     /**
      * Generates a string containing a number, for use as a unique stage ID.
-     * @return the value from an incrementing atomic counter, guaranteed not to return the same value twice.
+     * When a {@link StageIdScope} is open on the current thread, the IDs are unique within that scope and restart at 1
+     * for each scope; otherwise they come from a counter shared by the whole JVM.
+     * @return the value from an incrementing counter, guaranteed not to return the same value twice in the same scope.
      */
     public static String nextStageId() {
-        return String.valueOf(nextStageId.getAndIncrement());
+        StageIdScope scope = StageIdScope.current();
+        return scope != null ? scope.nextStageId() : String.valueOf(nextStageId.getAndIncrement());
     }
 
     private void validateNotificationTypes(final List<Notification> notifications) {
@@ -157,11 +241,10 @@ public class Stage extends HashMap<String, Object> {
             throw new IllegalArgumentException("Invalid builder parameters: provide either context(Map) or contextObject(Object), but not both");
         } else if (context != null) {
             return context;
-        } else { // serialize as JSON and deserialize into a Map.
+        } else { // convert to a Map directly, through a token buffer instead of a JSON string
             try {
-                String asJson = objectMapper.writeValueAsString(contextObject);
-                return objectMapper.readValue(asJson, Map.class);
-            } catch (JsonProcessingException e) {
+                return JsonHelper.getObjectMapper().convertValue(contextObject, CONTEXT_MAP_TYPE);
+            } catch (IllegalArgumentException e) {
                 throw new RuntimeException("Failed to create context map from object", e);
             }
         }
@@ -173,7 +256,7 @@ public class Stage extends HashMap<String, Object> {
         } else if (singleParentId != null) { // a single stage ID was provided
             return List.of(singleParentId);
         } else if (listOfParentIds != null) { // a list of stage IDs was provided
-            return rejectDuplicates(listOfParentIds);
+            return rejectDuplicates(new ArrayList<>(listOfParentIds)); // copied, so that the caller can reuse its list
         } else if (parentStage != null) { // using a stage object
             return List.of(parentStage.getId());
         } else if (parentStages != null) { // using a list of stage objects
@@ -189,7 +272,7 @@ public class Stage extends HashMap<String, Object> {
         return values;
     }
 
-    private void addFailureOptions(FailureStrategy onFailure) {
+    private void addFailureOptions(final Map<String, Object> entries, FailureStrategy onFailure) {
         if (onFailure == null) { // leave default behavior, do not add explicit keys
             return;
         }
@@ -201,25 +284,178 @@ public class Stage extends HashMap<String, Object> {
         accessors.entrySet().forEach(entry -> {
             Boolean fieldValue = entry.getValue().apply(onFailure);
             if (fieldValue != null) { // actually has a boolean value set
-                put(entry.getKey(), fieldValue);
+                entries.put(entry.getKey(), fieldValue);
             }
         });
     }
 
     // these fields are sometimes read back
     public String getId() {
-        return (String) get("refId");
+        return id != null ? id : (String) get("refId");
     }
 
     public String getName() {
-        return (String) get("name");
+        return name != null ? name : (String) get("name");
     }
 
     public String getType() {
-        return (String) get("type");
+        return type != null ? type : (String) get("type");
     }
 
+    @SuppressWarnings("unchecked")
     public List<String> getParentIds() {
-        return (List<String>) get("requisiteStageRefIds");
+        return parentIds != null ? parentIds : (List<String>) get("requisiteStageRefIds");
+    }
+
+    /**
+     * Computes the derived fields of the notifications and expected artifacts of the stage once. The parent IDs and
+     * artifact lists were already copied when the stage was built, but the values of the context are not copied: the
+     * maps and lists given as context must not be modified after this call.
+     *
+     * @return this stage
+     * @see Pipeline#freeze()
+     */
+    public Stage freeze() {
+        for (String key : List.of("notifications", "expectedArtifacts")) {
+            Object values = get(key);
+            if (values instanceof List) {
+                for (Object value : (List<?>) values) {
+                    if (value instanceof Notification) {
+                        ((Notification) value).freeze();
+                    } else if (value instanceof ExpectedArtifact) {
+                        ((ExpectedArtifact) value).freeze();
+                    }
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Freezes the stage and caches its JSON the first time it is serialized, so that pipelines including the same
+     * stage instance copy its JSON instead of serializing it again. This only applies to the pipelines serialized
+     * through {@link JsonHelper}, e.g. with {@link Pipeline#toJson()}.
+     *
+     * @return this stage
+     * @see JsonFragmentCache
+     */
+    public synchronized Stage share() {
+        if (jsonFragmentCache == null) {
+            freeze();
+            jsonFragmentCache = new JsonFragmentCache();
+        }
+        return this;
+    }
+
+    @Override
+    public JsonFragmentCache getJsonFragmentCache() {
+        return jsonFragmentCache;
+    }
+
+    /**
+     * @return the value of {@code TYPED_KEYS[index]}, null if it is absent or stored with the other entries
+     */
+    private Object getTypedValue(final int index) {
+        switch (index) {
+            case 0: return completeOtherBranchesThenFail;
+            case 1: return continuePipeline;
+            case 2: return failOnFailedExpressions;
+            case 3: return failPipeline;
+            case 4: return name;
+            case 5: return id;
+            case 6: return parentIds;
+            case 7: return stageTimeoutMs != NO_TIMEOUT ? stageTimeoutMs : null;
+            case 8: return type;
+            default: throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+    }
+
+    @Override
+    public Object get(final Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        int typed = Arrays.binarySearch(TYPED_KEYS, key);
+        if (typed >= 0) {
+            Object value = getTypedValue(typed);
+            if (value != null) {
+                return value;
+            }
+        }
+        int extra = Arrays.binarySearch(extraKeys, key);
+        return extra >= 0 ? extraValues[extra] : null;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        if (!(key instanceof String)) {
+            return false;
+        }
+        int typed = Arrays.binarySearch(TYPED_KEYS, key);
+        return (typed >= 0 && getTypedValue(typed) != null) || Arrays.binarySearch(extraKeys, key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        int size = extraKeys.length;
+        for (int i = 0; i < TYPED_KEYS.length; i++) {
+            if (getTypedValue(i) != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return a read-only view of the entries, in key order
+     */
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return Stage.this.size();
+            }
+        };
+    }
+
+    /**
+     * Merges the typed entries and the other entries, both sorted by key. The two never share a key.
+     */
+    private class EntryIterator implements Iterator<Entry<String, Object>> {
+        private int typed = nextTyped(0);
+        private int extra = 0;
+
+        private int nextTyped(int index) {
+            while (index < TYPED_KEYS.length && getTypedValue(index) == null) {
+                index++;
+            }
+            return index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return typed < TYPED_KEYS.length || extra < extraKeys.length;
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (extra == extraKeys.length || (typed < TYPED_KEYS.length && TYPED_KEYS[typed].compareTo(extraKeys[extra]) < 0)) {
+                Entry<String, Object> entry = new SimpleImmutableEntry<>(TYPED_KEYS[typed], getTypedValue(typed));
+                typed = nextTyped(typed + 1);
+                return entry;
+            }
+            Entry<String, Object> entry = new SimpleImmutableEntry<>(extraKeys[extra], extraValues[extra]);
+            extra++;
+            return entry;
+        }
     }
 }
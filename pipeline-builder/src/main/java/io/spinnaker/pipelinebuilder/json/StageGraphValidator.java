@@ -0,0 +1,159 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.spinnaker.pipelinebuilder.json;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Validates the links between the stages of a pipeline: every parent must be in the pipeline, each stage must appear
+ * only once, and there must be no circular dependency.
+ *
+ * <p>Stages are numbered by their position in the list and the graph is stored in int arrays, with the children of
+ * stage {@code i} at {@code children[childOffsets[i]]} to {@code children[childOffsets[i + 1] - 1]}. Cycles are
+ * detected with Kahn's algorithm, so validation is linear in the number of stages and links.</p>
+ */
+final class StageGraphValidator {
+
+    private StageGraphValidator() {
+    }
+
+    /**
+     * @param stages the stages of a pipeline
+     * @throws IllegalArgumentException if a parent is missing, a stage appears more than once, or the stages form a cycle
+     */
+    static void validate(final List<Stage> stages) {
+        final int stageCount = stages.size();
+        final Map<String, Integer> indexById = new HashMap<>(Math.max(16, stageCount * 2));
+        final Set<String> duplicateIds = new LinkedHashSet<>();
+        int linkCount = 0;
+        for (int i = 0; i < stageCount; i++) {
+            Stage stage = stages.get(i);
+            if (indexById.putIfAbsent(stage.getId(), i) != null) {
+                duplicateIds.add(stage.getId());
+            }
+            linkCount += stage.getParentIds().size();
+        }
+
+        // parents of stage i are at parents[parentOffsets[i]] to parents[parentOffsets[i + 1] - 1]
+        final int[] parentOffsets = new int[stageCount + 1];
+        final int[] parents = new int[linkCount];
+        final int[] childCounts = new int[stageCount];
+        Set<String> missingIds = null;
+        int link = 0;
+        for (int i = 0; i < stageCount; i++) {
+            parentOffsets[i] = link;
+            for (String parentId : stages.get(i).getParentIds()) {
+                Integer parent = indexById.get(parentId);
+                if (parent == null) {
+                    if (missingIds == null) {
+                        missingIds = new LinkedHashSet<>();
+                    }
+                    missingIds.add(parentId);
+                } else {
+                    parents[link++] = parent;
+                    childCounts[parent]++;
+                }
+            }
+        }
+        parentOffsets[stageCount] = link;
+
+        if (missingIds != null) {
+            throw new IllegalArgumentException("Some stages are used as parents but not present in the list of stages for the pipeline. Ids: " + String.join(",", missingIds));
+        }
+        if (!duplicateIds.isEmpty()) {
+            throw new IllegalArgumentException("Some stages appear multiple times. Ids: " + String.join(", ", duplicateIds));
+        }
+
+        final int[] childOffsets = new int[stageCount + 1];
+        for (int i = 0; i < stageCount; i++) {
+            childOffsets[i + 1] = childOffsets[i] + childCounts[i];
+        }
+        final int[] children = new int[link];
+        final int[] nextChild = Arrays.copyOf(childOffsets, stageCount);
+        final int[] remainingParents = new int[stageCount];
+        for (int i = 0; i < stageCount; i++) {
+            remainingParents[i] = parentOffsets[i + 1] - parentOffsets[i];
+            for (int p = parentOffsets[i]; p < parentOffsets[i + 1]; p++) {
+                children[nextChild[parents[p]]++] = i;
+            }
+        }
+
+        // Kahn's algorithm: repeatedly remove the stages whose parents have all been removed
+        final int[] queue = new int[stageCount];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < stageCount; i++) {
+            if (remainingParents[i] == 0) {
+                queue[tail++] = i;
+            }
+        }
+        while (head < tail) {
+            int stage = queue[head++];
+            for (int c = childOffsets[stage]; c < childOffsets[stage + 1]; c++) {
+                if (--remainingParents[children[c]] == 0) {
+                    queue[tail++] = children[c];
+                }
+            }
+        }
+        if (tail < stageCount) {
+            throw new IllegalArgumentException("Circular dependency found among the stages, each one being a parent of the next: "
+                + String.join(" -> ", findCycle(stages, parentOffsets, parents, remainingParents)));
+        }
+    }
+
+    /**
+     * Finds one cycle among the stages left over by Kahn's algorithm. Each of them still has a parent that was not
+     * removed, so walking from parent to parent only visits left-over stages and eventually comes back to one of them.
+     *
+     * @return the IDs of the stages in the cycle, each one a parent of the next, starting and ending with the same ID
+     */
+    private static List<String> findCycle(final List<Stage> stages, final int[] parentOffsets, final int[] parents,
+        final int[] remainingParents) {
+        final int[] positionInWalk = new int[stages.size()];
+        Arrays.fill(positionInWalk, -1);
+        final List<Integer> walk = new ArrayList<>();
+        int stage = 0;
+        while (remainingParents[stage] == 0) {
+            stage++;
+        }
+        while (positionInWalk[stage] == -1) {
+            positionInWalk[stage] = walk.size();
+            walk.add(stage);
+            int next = -1;
+            for (int p = parentOffsets[stage]; p < parentOffsets[stage + 1] && next == -1; p++) {
+                if (remainingParents[parents[p]] > 0) {
+                    next = parents[p];
+                }
+            }
+            stage = next;
+        }
+
+        List<String> cycle = new ArrayList<>();
+        for (int i = positionInWalk[stage]; i < walk.size(); i++) {
+            cycle.add(stages.get(walk.get(i)).getId());
+        }
+        cycle.add(stages.get(stage).getId());
+        Collections.reverse(cycle); // the walk goes from child to parent
+        return cycle;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.spinnaker.pipelinebuilder.json;
+
+import io.spinnaker.pipelinebuilder.pipelines.JsonPipelineBuilder;
+
+/**
+ * Restarts the stage IDs generated by {@link Stage#nextStageId()} at 1 for the
+ * duration of a pipeline build.
+ *
+ * <p>Without a scope, stage IDs come from a single counter shared by the whole
+ * JVM, so the IDs of a pipeline depend on how many stages were created before
+ * it. While a scope is open on the current thread, stages without an explicit
+ * ID are numbered from 1 instead, which makes the output identical whether
+ * pipelines are generated one by one or concurrently.</p>
+ *
+ * <p>{@link JsonPipelineBuilder#build()} opens a scope around
+ * {@code buildPipeline()}. Scopes can also be opened explicitly:</p>
+ * <pre>
+ * try (StageIdScope scope = StageIdScope.open()) {
+ *     Stage first = Stage.builder().name("first").type(StageTypes.WAIT).build();   // refId "1"
+ *     Stage second = Stage.builder().name("second").type(StageTypes.WAIT).build(); // refId "2"
+ * }
+ * </pre>
+ *
+ * <p>A scope belongs to the thread that opened it and must be closed on that
+ * thread. Scopes can be nested, in which case closing the inner scope resumes
+ * the numbering of the outer one. Stages created outside any scope (for example
+ * in a field initializer of a builder) keep using the shared counter and
+ * should be given explicit IDs if they are mixed with stages created inside
+ * one, to avoid collisions.</p>
+ */
+public final class StageIdScope implements AutoCloseable {
+    private static final ThreadLocal<StageIdScope> currentScope = new ThreadLocal<>();
+
+    private final StageIdScope enclosingScope;
+    private int nextStageId = 1; // only accessed by the thread owning the scope
+
+    private StageIdScope(final StageIdScope enclosingScope) {
+        this.enclosingScope = enclosingScope;
+    }
+
+    /**
+     * Opens a new scope on the current thread; stage IDs generated on this thread restart at 1 until it is closed.
+     *
+     * @return the new scope, to be closed once the pipeline has been built
+     */
+    public static StageIdScope open() {
+        StageIdScope scope = new StageIdScope(currentScope.get());
+        currentScope.set(scope);
+        return scope;
+    }
+
+    /**
+     * @return the innermost scope open on the current thread, or null if there is none
+     */
+    static StageIdScope current() {
+        return currentScope.get();
+    }
+
+    String nextStageId() {
+        return String.valueOf(nextStageId++);
+    }
+
+    @Override
+    public void close() {
+        if (currentScope.get() != this) {
+            throw new IllegalStateException("Stage ID scopes must be closed on the thread that opened them, in reverse order");
+        }
+        if (enclosingScope == null) {
+            currentScope.remove();
+        } else {
+            currentScope.set(enclosingScope);
+        }
+    }
+}
@@ -16,6 +16,9 @@
 
 package io.spinnaker.pipelinebuilder.json.application;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
@@ -24,7 +27,9 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.spinnaker.pipelinebuilder.json.helpers.JsonHelper;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonOutputMode;
 
 import lombok.Builder;
 import lombok.Getter;
@@ -129,7 +134,45 @@ public class Application {
      * Serializes the application as JSON
      */
     public String toJson() throws JsonProcessingException {
-        return new ObjectMapper().writerWithDefaultPrettyPrinter()
-                .writeValueAsString(this);
+        return toJson(JsonOutputMode.PRETTY);
+    }
+
+    /**
+     * Serializes the application as JSON, formatted according to {@code mode}.
+     */
+    public String toJson(final JsonOutputMode mode) throws JsonProcessingException {
+        return JsonHelper.toJson(this, mode, false);
+    }
+
+    /**
+     * Streams the application as UTF-8 encoded JSON, in the same form as
+     * {@link #toJson()}. The stream is flushed but not closed.
+     */
+    public void writeJson(final OutputStream outputStream) throws IOException {
+        writeJson(outputStream, JsonOutputMode.PRETTY);
+    }
+
+    /**
+     * Streams the application as UTF-8 encoded JSON, in the same form as
+     * {@link #toJson(JsonOutputMode)}. The stream is flushed but not closed.
+     */
+    public void writeJson(final OutputStream outputStream, final JsonOutputMode mode) throws IOException {
+        JsonHelper.writeJson(outputStream, this, mode, false);
+    }
+
+    /**
+     * Streams the application as JSON, in the same form as {@link #toJson()}.
+     * The writer is flushed but not closed.
+     */
+    public void writeJson(final Writer writer) throws IOException {
+        writeJson(writer, JsonOutputMode.PRETTY);
+    }
+
+    /**
+     * Streams the application as JSON, in the same form as
+     * {@link #toJson(JsonOutputMode)}. The writer is flushed but not closed.
+     */
+    public void writeJson(final Writer writer, final JsonOutputMode mode) throws IOException {
+        JsonHelper.writeJson(writer, this, mode, false);
     }
 }
@@ -30,4 +30,14 @@ public interface ArtifactDefinition {
     @JsonProperty ArtifactType getType();
     @JsonProperty String getReference();
     @JsonProperty String getArtifactAccount();
+
+    /**
+     * Computes any derived field once, before the artifact is serialized several times. Artifacts without derived
+     * fields have nothing to do.
+     *
+     * @return this artifact
+     */
+    default ArtifactDefinition freeze() {
+        return this;
+    }
 }
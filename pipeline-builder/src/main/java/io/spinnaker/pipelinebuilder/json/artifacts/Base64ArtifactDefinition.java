@@ -16,10 +16,16 @@
 
 package io.spinnaker.pipelinebuilder.json.artifacts;
 
+import io.spinnaker.pipelinebuilder.json.DeterministicIdScope;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Base64;
 import java.util.Objects;
-import java.util.UUID;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
@@ -52,6 +58,11 @@ import lombok.Getter;
  *   .contents(contents)
  *   .build()
  * </pre>
+ *
+ * For large files, {@link #fromPath} and {@link #fromStream} encode the
+ * contents while reading them, without ever holding them as a String. The
+ * encoded reference is computed at most once per artifact and reused by every
+ * serialization.
  */
 @JsonInclude(Include.NON_NULL) // don't serialize null fields
 public class Base64ArtifactDefinition implements ArtifactDefinition {
@@ -66,7 +77,7 @@ public class Base64ArtifactDefinition implements ArtifactDefinition {
     @JsonProperty @Getter private final String name;
     /** 
      * The string contents that will later be base64 encoded during
-     * serialization
+     * serialization, null if the artifact was created from bytes
      */
     @JsonIgnore protected final String contents;
 
@@ -77,22 +88,88 @@ public class Base64ArtifactDefinition implements ArtifactDefinition {
      */
     @JsonIgnore protected final Boolean shouldEncode;
 
-    @Builder // this creates a builder with just these three fields
+    /** The serialized reference, computed on first use or in the constructor when created from bytes. */
+    @JsonIgnore private volatile String reference;
+
     public Base64ArtifactDefinition(String id, String name, String contents, Boolean shouldEncode) {
-        this.id = Objects.requireNonNullElse(id, UUID.randomUUID().toString());
+        this(id, name, contents, null, shouldEncode);
+    }
+
+    /**
+     * @param contentBytes the contents as bytes, an alternative to {@code contents}; they are encoded immediately and
+     * the array is not retained
+     */
+    @Builder // this creates a builder with just these fields
+    public Base64ArtifactDefinition(String id, String name, String contents, byte[] contentBytes, Boolean shouldEncode) {
+        if (contents != null && contentBytes != null) {
+            throw new IllegalArgumentException("Invalid builder parameters: provide either contents or contentBytes, but not both");
+        }
+        this.id = Objects.requireNonNullElseGet(id, () -> DeterministicIdScope.nextId("artifact"));
         this.name = name;
         this.contents = contents;
         this.shouldEncode = shouldEncode == null || shouldEncode;
+        if (contentBytes != null) {
+            this.reference = this.shouldEncode
+                ? Base64.getEncoder().encodeToString(contentBytes)
+                : new String(contentBytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Creates an artifact from a file, encoding it while it is read.
+     *
+     * @param id the artifact ID, a default ID from {@link DeterministicIdScope} if null
+     * @param name the artifact name
+     * @param path the file to embed
+     * @return the artifact
+     * @throws IOException if the file cannot be read
+     */
+    public static Base64ArtifactDefinition fromPath(String id, String name, Path path) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            return fromStream(id, name, inputStream);
+        }
+    }
+
+    /**
+     * Creates an artifact from the remaining bytes of a stream, encoding them while they are read. The stream is not
+     * closed.
+     *
+     * @param id the artifact ID, a default ID from {@link DeterministicIdScope} if null
+     * @param name the artifact name
+     * @param inputStream the contents to embed
+     * @return the artifact
+     * @throws IOException if the stream cannot be read
+     */
+    public static Base64ArtifactDefinition fromStream(String id, String name, InputStream inputStream) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try (OutputStream encoder = Base64.getEncoder().wrap(encoded)) { // closing the encoder writes the final padding
+            inputStream.transferTo(encoder);
+        }
+        return new Base64ArtifactDefinition(id, name, encoded.toString(StandardCharsets.US_ASCII), null, false);
+    }
+
+    /**
+     * Encodes the contents now rather than on the first serialization.
+     *
+     * @return this artifact
+     */
+    @Override
+    public Base64ArtifactDefinition freeze() {
+        getReference();
+        return this;
     }
 
     @JsonProperty("reference")
     public String getReference() {
-        if (!shouldEncode) {
-            return contents;
+        String result = reference;
+        if (result == null && contents != null) {
+            // may be computed twice if two threads race here, which is harmless since the result is the same
+            result = shouldEncode
+                ? Base64.getEncoder().encodeToString(contents.getBytes(StandardCharsets.UTF_8))
+                : contents;
+            reference = result;
         }
-
-        return contents == null ? null : Base64.getEncoder()
-            .encodeToString(contents.getBytes(StandardCharsets.UTF_8));
+        return result;
     }
 
     @JsonProperty("type")
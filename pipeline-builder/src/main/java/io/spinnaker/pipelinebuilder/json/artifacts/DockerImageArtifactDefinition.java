@@ -16,13 +16,14 @@
 
 package io.spinnaker.pipelinebuilder.json.artifacts;
 
+import io.spinnaker.pipelinebuilder.json.DeterministicIdScope;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Builder;
 import lombok.Getter;
 
-import java.util.UUID;
+import java.util.Objects;
 
 /**
  * A container image definition that will expose metadata about a container
@@ -38,9 +39,16 @@ public class DockerImageArtifactDefinition implements ArtifactDefinition {
     private final String name;
     private final String reference;
 
-    @Builder
     public DockerImageArtifactDefinition(String artifactAccount, String name, String reference) {
-        this.id = UUID.randomUUID().toString();
+        this(null, artifactAccount, name, reference);
+    }
+
+    /**
+     * @param id the artifact ID, a default ID from {@link DeterministicIdScope} if null
+     */
+    @Builder
+    public DockerImageArtifactDefinition(String id, String artifactAccount, String name, String reference) {
+        this.id = Objects.requireNonNullElseGet(id, () -> DeterministicIdScope.nextId("artifact"));
         this.artifactAccount = artifactAccount;
         this.name = name;
         this.reference = reference;
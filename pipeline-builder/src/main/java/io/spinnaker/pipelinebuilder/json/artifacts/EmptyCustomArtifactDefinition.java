@@ -16,8 +16,6 @@
 
 package io.spinnaker.pipelinebuilder.json.artifacts;
 
-import java.util.UUID;
-
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 
@@ -32,7 +30,7 @@ import com.fasterxml.jackson.annotation.JsonInclude.Include;
 @JsonInclude(Include.NON_NULL) // don't serialize null fields
 public class EmptyCustomArtifactDefinition extends Base64ArtifactDefinition {
     public EmptyCustomArtifactDefinition() {
-      super(UUID.randomUUID().toString(), null, "", true);
+      super(null, null, "", true); // default ID
     }
 
     // @Builder comes from Base64ArtifactDefinition
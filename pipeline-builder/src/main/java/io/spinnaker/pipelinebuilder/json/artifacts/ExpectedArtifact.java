@@ -16,8 +16,8 @@
 
 package io.spinnaker.pipelinebuilder.json.artifacts;
 
+import io.spinnaker.pipelinebuilder.json.DeterministicIdScope;
 import java.util.Objects;
-import java.util.UUID;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
@@ -87,11 +87,26 @@ public class ExpectedArtifact {
     @Builder
     public ExpectedArtifact(String id, String displayName, ArtifactDefinition matchArtifact, Boolean useDefaultArtifact,
         Boolean usePriorArtifact, ArtifactDefinition defaultArtifact) {
-        this.id = Objects.requireNonNullElse(id, UUID.randomUUID().toString());
+        this.id = Objects.requireNonNullElseGet(id, () -> DeterministicIdScope.nextId("expectedArtifact"));
         this.displayName = Objects.requireNonNull(displayName);
         this.matchArtifact = matchArtifact;
         this.useDefaultArtifact = useDefaultArtifact != null ? useDefaultArtifact : false;
         this.usePriorArtifact = usePriorArtifact != null ? usePriorArtifact : false;
         this.defaultArtifact = defaultArtifact;
     }
+
+    /**
+     * Computes the derived fields of the match and default artifacts once.
+     *
+     * @return this expected artifact
+     */
+    public ExpectedArtifact freeze() {
+        if (matchArtifact != null) {
+            matchArtifact.freeze();
+        }
+        if (defaultArtifact != null) {
+            defaultArtifact.freeze();
+        }
+        return this;
+    }
 }
@@ -16,12 +16,12 @@
 
 package io.spinnaker.pipelinebuilder.json.artifacts;
 
+import io.spinnaker.pipelinebuilder.json.DeterministicIdScope;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Builder;
 import lombok.Getter;
 
 import java.util.Objects;
-import java.util.UUID;
 
 /**
  * A GitHub file artifact defintion that will retrieve a GitHub file from a
@@ -56,7 +56,7 @@ public class GitHubArtifactDefinition implements ArtifactDefinition {
 
     @Builder
     public GitHubArtifactDefinition(String id, String artifactAccount, String name, String reference, String version) {
-        this.id = Objects.requireNonNullElse(id, UUID.randomUUID().toString());
+        this.id = Objects.requireNonNullElseGet(id, () -> DeterministicIdScope.nextId("artifact"));
         this.artifactAccount = artifactAccount;
         this.name = name;
         this.reference = reference;
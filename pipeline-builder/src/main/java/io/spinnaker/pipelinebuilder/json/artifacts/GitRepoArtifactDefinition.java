@@ -16,6 +16,7 @@
 
 package io.spinnaker.pipelinebuilder.json.artifacts;
 
+import io.spinnaker.pipelinebuilder.json.DeterministicIdScope;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Builder;
 import lombok.Getter;
@@ -23,7 +24,6 @@ import lombok.Getter;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
-import java.util.UUID;
 
 /**
  * A Git Repo artifact defintion that will retrieve a git repo from a
@@ -62,7 +62,7 @@ public class GitRepoArtifactDefinition implements ArtifactDefinition {
             final String version,
             final String subPath
     ) {
-        this.id = Objects.requireNonNullElse(id, UUID.randomUUID().toString());
+        this.id = Objects.requireNonNullElseGet(id, () -> DeterministicIdScope.nextId("artifact"));
         this.artifactAccount = artifactAccount;
         this.reference = reference;
         this.version = version;
@@ -16,8 +16,8 @@
 
 package io.spinnaker.pipelinebuilder.json.artifacts;
 
+import io.spinnaker.pipelinebuilder.json.DeterministicIdScope;
 import java.util.Objects;
-import java.util.UUID;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
@@ -64,7 +64,7 @@ public class HelmArtifactDefinition implements ArtifactDefinition {
 
     @Builder
     public HelmArtifactDefinition(String id, String artifactAccount, String name, String reference, String version) {
-        this.id = Objects.requireNonNullElse(id, UUID.randomUUID().toString());
+        this.id = Objects.requireNonNullElseGet(id, () -> DeterministicIdScope.nextId("artifact"));
         this.artifactAccount = artifactAccount;
         this.name = name;
         this.reference = reference;
@@ -16,8 +16,8 @@
 
 package io.spinnaker.pipelinebuilder.json.artifacts;
 
+import io.spinnaker.pipelinebuilder.json.DeterministicIdScope;
 import java.util.Objects;
-import java.util.UUID;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
@@ -69,7 +69,7 @@ public class HttpArtifactDefinition implements ArtifactDefinition {
 
     @Builder
     public HttpArtifactDefinition(final String id, final String name, final String reference, final String artifactAccount) {
-        this.id = Objects.requireNonNullElse(id, UUID.randomUUID().toString());
+        this.id = Objects.requireNonNullElseGet(id, () -> DeterministicIdScope.nextId("artifact"));
         this.name = name;
         this.reference = reference;
         this.artifactAccount = artifactAccount;
@@ -16,13 +16,13 @@
 
 package io.spinnaker.pipelinebuilder.json.artifacts;
 
+import io.spinnaker.pipelinebuilder.json.DeterministicIdScope;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Getter;
 
 import java.util.Objects;
-import java.util.UUID;
 
 /**
  * A Kubernetes artifact definition.
@@ -70,7 +70,7 @@ public abstract class KubernetesArtifactDefinition implements ArtifactDefinition
      * @param reference {@link KubernetesArtifactDefinition#reference}
      */
     public KubernetesArtifactDefinition(final String id, final String artifactAccount, final String name, final String reference) {
-        this.id = Objects.requireNonNullElse(id, UUID.randomUUID().toString());
+        this.id = Objects.requireNonNullElseGet(id, () -> DeterministicIdScope.nextId("artifact"));
         this.artifactAccount = artifactAccount;
         this.name = name;
         this.reference = reference;
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2023 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.spinnaker.pipelinebuilder.json.artifacts;
+
+import io.spinnaker.pipelinebuilder.json.DeterministicIdScope;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Objects;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.google.common.io.ByteSource;
+import com.google.common.io.Resources;
+
+import lombok.Getter;
+
+/**
+ * An embedded base64 artifact whose contents are read from a file or a
+ * classpath resource only when the pipeline is serialized.
+ *
+ * Unlike {@link Base64ArtifactDefinition}, this class only holds a reference
+ * to its source: the contents are read and base64 encoded directly into the
+ * JSON output, a chunk at a time, so embedding a large file does not require
+ * holding either the file or its encoding in memory. The source is read again
+ * each time the pipeline is serialized, and must therefore remain available
+ * until then.
+ *
+ * <pre>
+ * ArtifactDefinition manifest = StreamingBase64ArtifactDefinition.fromResource(
+ *     computeStableIdForArtifact("manifest"), "manifest.yml",
+ *     getClass().getClassLoader(), "manifests/bundle.yml");
+ * </pre>
+ *
+ * The serialized form is the same as a {@link Base64ArtifactDefinition} with the
+ * same contents.
+ */
+@JsonInclude(Include.NON_NULL) // don't serialize null fields
+public class StreamingBase64ArtifactDefinition implements ArtifactDefinition {
+    /** An ID that will be used to reference the artifact, generally a UUID. */
+    @JsonProperty protected final String id;
+    /** An optional identifier used for future references to the artifact. */
+    @JsonProperty @Getter private final String name;
+    /** Where the contents are read from, opened again for every serialization. */
+    @JsonIgnore private final ByteSource source;
+    /** A description of the source, used in error messages. */
+    @JsonIgnore @Getter private final String location;
+
+    private StreamingBase64ArtifactDefinition(String id, String name, ByteSource source, String location) {
+        this.id = Objects.requireNonNullElseGet(id, () -> DeterministicIdScope.nextId("artifact"));
+        this.name = name;
+        this.source = source;
+        this.location = location;
+    }
+
+    /**
+     * Creates an artifact embedding a file. The file is not read until the artifact is serialized.
+     *
+     * @param id the artifact ID, a default ID from {@link DeterministicIdScope} if null
+     * @param name the artifact name
+     * @param path the file to embed
+     * @return the artifact
+     * @throws IllegalArgumentException if the file does not exist or cannot be read
+     */
+    public static StreamingBase64ArtifactDefinition fromPath(String id, String name, Path path) {
+        if (!Files.isRegularFile(path) || !Files.isReadable(path)) {
+            throw new IllegalArgumentException("Artifact file " + path + " does not exist or is not readable");
+        }
+        return new StreamingBase64ArtifactDefinition(id, name, com.google.common.io.Files.asByteSource(path.toFile()), path.toString());
+    }
+
+    /**
+     * Creates an artifact embedding a classpath resource. The resource is not read until the artifact is serialized.
+     *
+     * @param id the artifact ID, a default ID from {@link DeterministicIdScope} if null
+     * @param name the artifact name
+     * @param classLoader the ClassLoader to fetch the resource from
+     * @param resourceName the resource name
+     * @return the artifact
+     * @throws IllegalArgumentException if the resource cannot be found
+     */
+    public static StreamingBase64ArtifactDefinition fromResource(String id, String name, ClassLoader classLoader, String resourceName) {
+        URL resource = classLoader.getResource(resourceName);
+        if (resource == null) {
+            throw new IllegalArgumentException("Artifact resource " + resourceName + " not found");
+        }
+        return fromUrl(id, name, resource);
+    }
+
+    /**
+     * Creates an artifact embedding the contents of a URL, typically a resource URL. The URL is not opened until the
+     * artifact is serialized.
+     *
+     * @param id the artifact ID, a default ID from {@link DeterministicIdScope} if null
+     * @param name the artifact name
+     * @param url the location of the contents
+     * @return the artifact
+     */
+    public static StreamingBase64ArtifactDefinition fromUrl(String id, String name, URL url) {
+        return new StreamingBase64ArtifactDefinition(id, name, Resources.asByteSource(url), url.toString());
+    }
+
+    /**
+     * Opens the source of the artifact; the caller is responsible for closing the stream.
+     *
+     * @return the raw (not encoded) contents
+     * @throws IOException if the source cannot be opened
+     */
+    public InputStream openStream() throws IOException {
+        return source.openStream();
+    }
+
+    /**
+     * Reads and encodes the whole source. This defeats the purpose of this class and is only provided to implement
+     * {@link ArtifactDefinition}; serialization streams the contents instead of calling this method.
+     *
+     * @return the base64 encoded contents
+     * @throws UncheckedIOException if the source cannot be read
+     */
+    @JsonIgnore
+    @Override
+    public String getReference() {
+        try {
+            return Base64.getEncoder().encodeToString(source.read());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read artifact " + location, e);
+        }
+    }
+
+    @JsonProperty("reference")
+    @JsonSerialize(using = StreamingBase64Serializer.class)
+    ByteSource getSource() {
+        return source;
+    }
+
+    @JsonProperty("type")
+    public ArtifactType getType() {
+        return ArtifactType.EMBEDDED_BASE64;
+    }
+
+    @JsonProperty("artifactAccount")
+    public String getArtifactAccount() {
+        return "embedded-artifact";
+    }
+
+    /**
+     * Base64 encodes the source directly into the generator.
+     */
+    static class StreamingBase64Serializer extends StdSerializer<ByteSource> {
+        StreamingBase64Serializer() {
+            super(ByteSource.class);
+        }
+
+        @Override
+        public void serialize(ByteSource source, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            try (InputStream inputStream = source.openBufferedStream()) {
+                if (gen instanceof TokenBuffer) {
+                    // token buffers, used when converting to a tree, cannot stream binary data; a text node also keeps
+                    // the tree comparable with one parsed from JSON
+                    gen.writeString(Base64.getEncoder().encodeToString(inputStream.readAllBytes()));
+                } else {
+                    // same alphabet and padding as java.util.Base64.getEncoder(), so the output matches Base64ArtifactDefinition
+                    gen.writeBinary(Base64Variants.MIME_NO_LINEFEEDS, inputStream, -1);
+                }
+            }
+        }
+    }
+}
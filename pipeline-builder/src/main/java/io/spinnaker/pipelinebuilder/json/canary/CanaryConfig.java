@@ -24,8 +24,13 @@ import java.util.Map;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import io.spinnaker.pipelinebuilder.json.helpers.JsonHelper;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonOutputMode;
 
 import lombok.Builder;
+import lombok.Getter;
 
 /**
  * CanaryConfig describes the configuration used by the Canary Analysis stage
@@ -55,6 +60,7 @@ import lombok.Builder;
  * </p>
  * @see <a href="https://spinnaker.io/docs/guides/user/canary/config/canary-config/#prerequisites">Prerequisites</a>
  */
+@Getter
 @JsonInclude(Include.NON_NULL) // do not serialize null fields
 public class CanaryConfig {
     /**
@@ -142,4 +148,18 @@ public class CanaryConfig {
         this.templates = Collections.emptyMap();
         this.metrics = metrics;
     }
+
+    /**
+     * Serializes the canary config as JSON
+     */
+    public String toJson() throws JsonProcessingException {
+        return toJson(JsonOutputMode.PRETTY);
+    }
+
+    /**
+     * Serializes the canary config as JSON, formatted according to {@code mode}.
+     */
+    public String toJson(final JsonOutputMode mode) throws JsonProcessingException {
+        return JsonHelper.toJson(this, mode, false);
+    }
 }
@@ -33,6 +33,9 @@ public abstract class CanaryHelper {
      * In the event that the canary config ID was not found, the default config
      * ID will be used instead
      *
+     * When the same stages are added to many pipelines, call {@link Stage#share()}
+     * on each of them so that they are only serialized once.
+     *
      * @return the list of stages that will find and use a canary config.
      */
     public static List<Stage> buildStagesToLookupCanaryId(
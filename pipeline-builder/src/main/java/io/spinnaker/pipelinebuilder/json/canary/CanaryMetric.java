@@ -24,10 +24,12 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 
 import lombok.Builder;
+import lombok.Getter;
 
 /**
  * A canary metric is used to evaluate the health of the deployment.
  */
+@Getter
 @JsonInclude(Include.NON_NULL) // do not serialize null fields
 public class CanaryMetric {
     /** * The name of the metric.  */
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.spinnaker.pipelinebuilder.json.helpers;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.PrettyPrinter;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.ser.ContextualSerializer;
+import com.fasterxml.jackson.databind.ser.ResolvableSerializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.databind.type.MapType;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Caches the JSON of a value shared by many pipelines, e.g. a stage or a list
+ * of notifications reused as is, so that it is only serialized once and then
+ * copied into the output of each pipeline as raw JSON.
+ *
+ * <p>The cached JSON depends on how the output is formatted, so one copy is
+ * kept for each combination of generator features, property and map entry
+ * ordering, and, when pretty-printing, indentation depth. The JSON is only
+ * spliced into textual JSON output that is either compact or indented by a
+ * {@link DefaultPrettyPrinter} rendering exactly like one with the default
+ * configuration, which is the printer fragments are rendered with; in all
+ * other cases, including a reconfigured {@code DefaultPrettyPrinter} and the
+ * tree built for {@link JsonOutputMode#CANONICAL}, the value is serialized as
+ * usual. The value must not change once its JSON has been cached.</p>
+ */
+public final class JsonFragmentCache {
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final String INDENTATION = "  "; // used by DefaultPrettyPrinter for each level of nesting
+    private static final String DEFAULT_PRINTER_SAMPLE = renderSample(new DefaultPrettyPrinter());
+
+    // whether each printer renders like the default one, by identity; Jackson creates a printer for each output, so
+    // this only holds the printers of the outputs in progress, and each of them is checked once for all its fragments
+    private static final Cache<PrettyPrinter, Boolean> printersRenderingLikeDefault = CacheBuilder.newBuilder()
+        .weakKeys()
+        .build();
+
+    private final Map<Long, SerializableString> fragments = new ConcurrentHashMap<>();
+
+    /**
+     * Writes a value of a {@link JsonFragment} during serialization.
+     */
+    @FunctionalInterface
+    public interface FragmentWriter {
+        void write(JsonGenerator gen) throws IOException;
+    }
+
+    /**
+     * Writes the cached JSON of a value, serializing it with {@code writer} the first time it is written in this
+     * format.
+     *
+     * @param gen the generator the value is being written to
+     * @param provider the provider serializing the value
+     * @param writer writes the value without using the cache
+     * @return true if the value was written, false if it can't be written as raw JSON to this generator and must be
+     * serialized as usual
+     * @throws IOException if the value cannot be written
+     */
+    public boolean writeCached(final JsonGenerator gen, final SerializerProvider provider, final FragmentWriter writer) throws IOException {
+        if (!(gen instanceof JsonGeneratorImpl)) { // e.g. a TokenBuffer building a tree
+            return false;
+        }
+        final PrettyPrinter prettyPrinter = gen.getPrettyPrinter();
+        if (prettyPrinter != null && !rendersLikeDefault(prettyPrinter)) {
+            return false;
+        }
+        final boolean pretty = prettyPrinter != null;
+        final int depth = pretty ? objectDepth(gen.getOutputContext()) : 0;
+        final boolean sortedProperties = provider.isEnabled(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY);
+        final boolean sortedEntries = provider.isEnabled(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+        final long key = ((long) gen.getFeatureMask() << 32) | ((long) depth << 3)
+            | (pretty ? 4 : 0) | (sortedProperties ? 2 : 0) | (sortedEntries ? 1 : 0);
+
+        SerializableString fragment = fragments.get(key);
+        if (fragment == null) {
+            try {
+                fragment = fragments.computeIfAbsent(key, k -> new SerializedString(indent(serialize(gen, pretty, writer), depth)));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        gen.writeRawValue(fragment);
+        return true;
+    }
+
+    private static String serialize(final JsonGenerator gen, final boolean pretty, final FragmentWriter writer) {
+        final StringWriter json = new StringWriter();
+        try (JsonGenerator fragmentGen = jsonFactory.createGenerator(json)) {
+            fragmentGen.overrideStdFeatures(gen.getFeatureMask(), -1);
+            if (pretty) {
+                fragmentGen.setPrettyPrinter(new DefaultPrettyPrinter());
+            }
+            writer.write(fragmentGen);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return json.toString();
+    }
+
+    /**
+     * @return whether the printer is a {@link DefaultPrettyPrinter} whose configuration renders the same JSON as the
+     * default one, e.g. not one created with {@link DefaultPrettyPrinter#withoutSpacesInObjectEntries()}
+     */
+    private static boolean rendersLikeDefault(final PrettyPrinter prettyPrinter) {
+        if (prettyPrinter.getClass() != DefaultPrettyPrinter.class) {
+            return false;
+        }
+        Boolean rendersLikeDefault = printersRenderingLikeDefault.getIfPresent(prettyPrinter);
+        if (rendersLikeDefault == null) {
+            rendersLikeDefault = DEFAULT_PRINTER_SAMPLE.equals(renderSample(new SamplePrinter((DefaultPrettyPrinter) prettyPrinter)));
+            printersRenderingLikeDefault.put(prettyPrinter, rendersLikeDefault);
+        }
+        return rendersLikeDefault;
+    }
+
+    /**
+     * @return a document using every separator and indentation of the printer, with nested and empty values
+     */
+    private static String renderSample(final PrettyPrinter prettyPrinter) {
+        final StringWriter json = new StringWriter();
+        try (JsonGenerator gen = jsonFactory.createGenerator(json)) {
+            gen.setPrettyPrinter(prettyPrinter);
+            gen.writeStartObject();
+            gen.writeArrayFieldStart("array");
+            gen.writeNumber(1);
+            gen.writeStartObject();
+            gen.writeObjectFieldStart("object");
+            gen.writeEndObject();
+            gen.writeEndObject();
+            gen.writeEndArray();
+            gen.writeArrayFieldStart("empty");
+            gen.writeEndArray();
+            gen.writeEndObject();
+        } catch (IOException e) { // a StringWriter never fails
+            throw new UncheckedIOException(e);
+        }
+        return json.toString();
+    }
+
+    /**
+     * A copy of a printer's configuration that starts at the root; {@link DefaultPrettyPrinter#createInstance()} would
+     * also copy the nesting level of the output being written.
+     */
+    private static final class SamplePrinter extends DefaultPrettyPrinter {
+        private static final long serialVersionUID = 1L;
+
+        SamplePrinter(final DefaultPrettyPrinter prettyPrinter) {
+            super(prettyPrinter);
+            _nesting = 0;
+        }
+    }
+
+    /**
+     * @return the nesting level of the pretty printer, which only indents the fields of objects
+     */
+    private static int objectDepth(final JsonStreamContext context) {
+        int depth = 0;
+        for (JsonStreamContext current = context; current != null; current = current.getParent()) {
+            if (current.inObject()) {
+                depth++;
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * @return the JSON with each line after the first one indented by {@code depth} more levels
+     */
+    private static String indent(final String json, final int depth) {
+        // line breaks inside JSON strings are escaped, so every line break in the output comes from the pretty printer
+        return depth == 0 ? json : json.replace("\n", "\n" + INDENTATION.repeat(depth));
+    }
+
+    /**
+     * @return a module writing the cached JSON of the {@link JsonFragment} maps, such as stages
+     */
+    static SimpleModule module() {
+        return new SimpleModule("JsonFragments").setSerializerModifier(new BeanSerializerModifier() {
+            @Override
+            public JsonSerializer<?> modifyMapSerializer(final SerializationConfig config, final MapType valueType,
+                final BeanDescription beanDesc, final JsonSerializer<?> serializer) {
+                return JsonFragment.class.isAssignableFrom(valueType.getRawClass()) ? new CachingSerializer(serializer) : serializer;
+            }
+        });
+    }
+
+    /**
+     * Writes the cached JSON of a {@link JsonFragment}, and delegates to the serializer Jackson built for its type
+     * when it has no cache or the JSON can't be spliced.
+     */
+    private static class CachingSerializer extends StdSerializer<Object> implements ContextualSerializer, ResolvableSerializer {
+        private final JsonSerializer<Object> delegate;
+
+        @SuppressWarnings("unchecked")
+        CachingSerializer(final JsonSerializer<?> delegate) {
+            super(Object.class);
+            this.delegate = (JsonSerializer<Object>) delegate;
+        }
+
+        @Override
+        public void serialize(final Object value, final JsonGenerator gen, final SerializerProvider provider) throws IOException {
+            final JsonFragmentCache cache = ((JsonFragment) value).getJsonFragmentCache();
+            if (cache == null || !cache.writeCached(gen, provider, fragmentGen -> delegate.serialize(value, fragmentGen, provider))) {
+                delegate.serialize(value, gen, provider);
+            }
+        }
+
+        @Override
+        public void serializeWithType(final Object value, final JsonGenerator gen, final SerializerProvider provider,
+            final TypeSerializer typeSer) throws IOException {
+            delegate.serializeWithType(value, gen, provider, typeSer);
+        }
+
+        @Override
+        public boolean isEmpty(final SerializerProvider provider, final Object value) {
+            return delegate.isEmpty(provider, value);
+        }
+
+        @Override
+        public JsonSerializer<?> createContextual(final SerializerProvider provider, final BeanProperty property) throws JsonMappingException {
+            if (!(delegate instanceof ContextualSerializer)) {
+                return this;
+            }
+            final JsonSerializer<?> contextual = ((ContextualSerializer) delegate).createContextual(provider, property);
+            return contextual == delegate ? this : new CachingSerializer(contextual);
+        }
+
+        @Override
+        public void resolve(final SerializerProvider provider) throws JsonMappingException {
+            if (delegate instanceof ResolvableSerializer) {
+                ((ResolvableSerializer) delegate).resolve(provider);
+            }
+        }
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.spinnaker.pipelinebuilder.json.helpers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Process-wide JSON serialization facility shared by all the model classes.
+ *
+ * <p>Creating an {@link ObjectMapper} is cheap, but the first serialization of
+ * each type through a new mapper has to introspect the class and build its
+ * serializers. The mappers and writers held here are configured once and keep
+ * their serializer caches for the lifetime of the process. Jackson mappers and
+ * writers are thread-safe once configured, so they can be shared freely
+ * between threads generating pipelines in parallel.</p>
+ *
+ * <p>Writers stream directly through a {@link JsonGenerator} when given an
+ * {@code OutputStream} or a {@code Writer}; the target is flushed but never
+ * closed.</p>
+ *
+ * <p>Two flavors are available:</p>
+ * <ul>
+ *     <li><em>sorted</em> writers order object properties and map entries
+ *     alphabetically, which is what {@code Pipeline} uses to produce stable
+ *     output.</li>
+ *     <li><em>default</em> writers keep Jackson's default property order, as
+ *     used by {@code Application}.</li>
+ * </ul>
+ *
+ * <p>The {@code toJson} and {@code writeJson} methods taking a
+ * {@link JsonOutputMode} pick the right writer for each mode. For
+ * {@link JsonOutputMode#CANONICAL}, the value is first converted to a tree,
+ * which is then written compactly with its keys sorted and numbers
+ * normalized.</p>
+ *
+ * <p>Both mappers write the cached JSON of the values implementing
+ * {@link JsonFragment}, see {@link JsonFragmentCache}.</p>
+ */
+@UtilityClass   // can't be instantiated
+public class JsonHelper {
+    private static final ObjectMapper objectMapper = new ObjectMapper().registerModule(JsonFragmentCache.module());
+    private static final ObjectMapper sortedObjectMapper = newSortedObjectMapper();
+
+    // writers leave the target open so that callers streaming to their own OutputStream or Writer can keep using it
+    private static final ObjectWriter prettyWriter = objectMapper.writerWithDefaultPrettyPrinter()
+        .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private static final ObjectWriter compactWriter = objectMapper.writer()
+        .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private static final ObjectWriter sortedPrettyWriter = sortedObjectMapper.writerWithDefaultPrettyPrinter()
+        .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private static final ObjectWriter sortedCompactWriter = sortedObjectMapper.writer()
+        .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private static final ObjectWriter canonicalWriter = objectMapper.writer()
+        .with(JsonGenerator.Feature.WRITE_BIGDECIMAL_AS_PLAIN)
+        .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    private static ObjectMapper newSortedObjectMapper() {
+        ObjectMapper mapper = new ObjectMapper().registerModule(JsonFragmentCache.module());
+        return mapper.setConfig(mapper.getSerializationConfig()
+            .with(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS));
+    }
+
+    /**
+     * @return the shared mapper using Jackson's default configuration. It must not be reconfigured.
+     */
+    public static ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    /**
+     * @return the shared mapper sorting properties and map entries alphabetically. It must not be reconfigured.
+     */
+    public static ObjectMapper getSortedObjectMapper() {
+        return sortedObjectMapper;
+    }
+
+    /**
+     * @param prettyPrint whether to indent the output
+     * @return a writer using Jackson's default property order
+     */
+    public static ObjectWriter writer(final boolean prettyPrint) {
+        return prettyPrint ? prettyWriter : compactWriter;
+    }
+
+    /**
+     * @param prettyPrint whether to indent the output
+     * @return a writer sorting object properties and map entries alphabetically
+     */
+    public static ObjectWriter sortedWriter(final boolean prettyPrint) {
+        return prettyPrint ? sortedPrettyWriter : sortedCompactWriter;
+    }
+
+    /**
+     * @param value the object to serialize
+     * @param mode how to format the output
+     * @param sortProperties whether to sort object properties and map entries in the pretty and compact modes; the
+     * canonical mode always sorts them
+     * @return the JSON representation of the value
+     * @throws JsonProcessingException if the value cannot be serialized
+     */
+    public static String toJson(final Object value, final JsonOutputMode mode, final boolean sortProperties) throws JsonProcessingException {
+        return writer(mode, sortProperties).writeValueAsString(outputValue(value, mode));
+    }
+
+    /**
+     * @return the UTF-8 encoded JSON representation of the value
+     * @see #toJson(Object, JsonOutputMode, boolean)
+     */
+    public static byte[] toJsonBytes(final Object value, final JsonOutputMode mode, final boolean sortProperties) throws JsonProcessingException {
+        return writer(mode, sortProperties).writeValueAsBytes(outputValue(value, mode));
+    }
+
+    /**
+     * Streams the value as UTF-8 encoded JSON; the stream is flushed but not closed.
+     *
+     * @see #toJson(Object, JsonOutputMode, boolean)
+     */
+    public static void writeJson(final OutputStream outputStream, final Object value, final JsonOutputMode mode,
+        final boolean sortProperties) throws IOException {
+        writer(mode, sortProperties).writeValue(outputStream, outputValue(value, mode));
+    }
+
+    /**
+     * Streams the value as JSON; the writer is flushed but not closed.
+     *
+     * @see #toJson(Object, JsonOutputMode, boolean)
+     */
+    public static void writeJson(final Writer writer, final Object value, final JsonOutputMode mode,
+        final boolean sortProperties) throws IOException {
+        writer(mode, sortProperties).writeValue(writer, outputValue(value, mode));
+    }
+
+    private static ObjectWriter writer(final JsonOutputMode mode, final boolean sortProperties) {
+        switch (mode) {
+            case CANONICAL:
+                return canonicalWriter;
+            case COMPACT:
+                return sortProperties ? sortedCompactWriter : compactWriter;
+            default:
+                return sortProperties ? sortedPrettyWriter : prettyWriter;
+        }
+    }
+
+    /**
+     * Streams a tree in {@link JsonOutputMode#CANONICAL} form, leaving out the fields rejected by the filter; the
+     * stream is flushed but not closed. The tree is written as it is read, without being copied.
+     *
+     * @param outputStream where to write the UTF-8 encoded JSON
+     * @param tree the tree to write, which is not modified
+     * @param filter which object fields to write
+     */
+    public static void writeCanonicalJson(final OutputStream outputStream, final JsonNode tree, final FieldFilter filter)
+        throws IOException {
+        canonicalWriter.writeValue(outputStream, new CanonicalTree(tree, filter));
+    }
+
+    /**
+     * Selects the object fields written by {@link #writeCanonicalJson(OutputStream, JsonNode, FieldFilter)}.
+     */
+    @FunctionalInterface
+    public interface FieldFilter {
+        /**
+         * @param depth the depth of the object holding the field, 0 for the root of the tree
+         * @param fieldName the name of the field
+         * @param value the value of the field
+         * @return whether to write the field
+         */
+        boolean include(int depth, String fieldName, JsonNode value);
+    }
+
+    private static Object outputValue(final Object value, final JsonOutputMode mode) throws JsonProcessingException {
+        if (mode != JsonOutputMode.CANONICAL) {
+            return value;
+        }
+        if (value instanceof JsonNode) {
+            return new CanonicalTree((JsonNode) value, (depth, fieldName, fieldValue) -> true);
+        }
+        try {
+            return new CanonicalTree(objectMapper.valueToTree(value), (depth, fieldName, fieldValue) -> true);
+        } catch (IllegalArgumentException e) { // how valueToTree reports serialization failures
+            throw new JsonMappingException(null, "Failed to convert " + value.getClass().getSimpleName() + " to a JSON tree", e);
+        }
+    }
+
+    /**
+     * Writes a tree with the fields of each object sorted by name and numbers normalized.
+     */
+    @RequiredArgsConstructor
+    private static final class CanonicalTree implements JsonSerializable {
+        private final JsonNode tree;
+        private final FieldFilter filter;
+
+        @Override
+        public void serialize(final JsonGenerator generator, final SerializerProvider provider) throws IOException {
+            write(tree, 0, generator, provider);
+        }
+
+        @Override
+        public void serializeWithType(final JsonGenerator generator, final SerializerProvider provider,
+            final TypeSerializer typeSerializer) throws IOException {
+            serialize(generator, provider);
+        }
+
+        private void write(final JsonNode node, final int depth, final JsonGenerator generator,
+            final SerializerProvider provider) throws IOException {
+            if (node.isObject()) {
+                List<String> fieldNames = new ArrayList<>(node.size());
+                node.fieldNames().forEachRemaining(fieldNames::add);
+                Collections.sort(fieldNames);
+                generator.writeStartObject();
+                for (String fieldName : fieldNames) {
+                    JsonNode value = node.get(fieldName);
+                    if (filter.include(depth, fieldName, value)) {
+                        generator.writeFieldName(fieldName);
+                        write(value, depth + 1, generator, provider);
+                    }
+                }
+                generator.writeEndObject();
+            } else if (node.isArray()) {
+                generator.writeStartArray();
+                for (JsonNode element : node) {
+                    write(element, depth + 1, generator, provider);
+                }
+                generator.writeEndArray();
+            } else if (node.isNumber() && !node.isIntegralNumber()
+                && !((node.isDouble() || node.isFloat()) && !Double.isFinite(node.doubleValue()))) {
+                // NaN and infinities have no decimal representation and are written as they are
+                BigDecimal decimal = node.decimalValue().stripTrailingZeros();
+                if (decimal.scale() <= 0) {
+                    generator.writeNumber(decimal.toBigIntegerExact());
+                } else {
+                    generator.writeNumber(decimal);
+                }
+            } else {
+                ((JsonSerializable) node).serialize(generator, provider);
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.spinnaker.pipelinebuilder.json.helpers;
+
+/**
+ * How JSON documents are formatted by the {@code toJson} and {@code writeJson} methods of the model classes.
+ */
+public enum JsonOutputMode {
+    /** Indented output, the default. */
+    PRETTY,
+    /** No whitespace between tokens, roughly half the size of the pretty output. */
+    COMPACT,
+    /**
+     * Compact output with the keys of every object sorted alphabetically and numbers written in a single form:
+     * integral values without a decimal point or exponent ({@code 30.0} and {@code 3e1} become {@code 30}), other
+     * values in plain notation without trailing zeros. Equal documents always produce the same bytes, which makes
+     * this mode suitable for hashing and deduplication.
+     */
+    CANONICAL
+}
@@ -16,8 +16,11 @@
 
 package io.spinnaker.pipelinebuilder.json.helpers;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.ParseException;
 import org.springframework.expression.common.TemplateParserContext;
 import org.springframework.expression.spel.SpelMessage;
 import org.springframework.expression.spel.SpelParseException;
@@ -28,8 +31,15 @@ import lombok.experimental.UtilityClass;
 
 @UtilityClass   // can't be instantiated
 public class SpelHelper {
+    /** Default number of distinct expressions whose validation result is remembered. */
+    public static final long DEFAULT_VALIDATION_CACHE_SIZE = 10_000;
+
     private static final ExpressionParser parser = new SpelExpressionParser();
     private static final TemplateParserContext context = new TemplateParserContext("${", "}");
+    private static final ValidationResult VALID = new ValidationResult(null);
+
+    // maps expressions to the outcome of their validation, so that each distinct expression is only parsed once
+    private static volatile Cache<String, ValidationResult> validationCache = newValidationCache(DEFAULT_VALIDATION_CACHE_SIZE);
 
     /**
      * Validates whether or not the expression is valid.
@@ -38,19 +48,96 @@ public class SpelHelper {
      * correct along with ensuring that the expression is an actual
      * SpelExpression.
      *
+     * The outcome is cached by expression, so validating an expression that
+     * was seen before does not parse it again. Invalid expressions are cached
+     * too, and a new exception is thrown for each call.
+     *
      * @param expression a valid Spel expression which must be prefixed with
      * "${" and suffixed with "}"
      * @throws SpelParseException if the expression is invalid
      */
     public static void ValidateExpression(String expression) {
+        final Cache<String, ValidationResult> cache = validationCache;
+        ValidationResult result = cache.getIfPresent(expression);
+        if (result == null) {
+            result = parse(expression);
+            cache.put(expression, result);
+        }
+        result.throwIfInvalid();
+    }
+
+    /**
+     * Replaces the validation cache with an empty one holding at most {@code maximumSize} expressions.
+     *
+     * @param maximumSize the maximum number of cached expressions, 0 to disable caching
+     */
+    public static void configureValidationCache(final long maximumSize) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("Cache size cannot be negative, got " + maximumSize);
+        }
+        validationCache = newValidationCache(maximumSize);
+    }
+
+    /**
+     * @return the number of validations answered from the cache since it was configured
+     */
+    public static long getValidationCacheHitCount() {
+        return validationCache.stats().hitCount();
+    }
+
+    /**
+     * @return the number of validations that had to parse the expression since the cache was configured
+     */
+    public static long getValidationCacheMissCount() {
+        return validationCache.stats().missCount();
+    }
+
+    private static Cache<String, ValidationResult> newValidationCache(final long maximumSize) {
+        return CacheBuilder.newBuilder()
+            .maximumSize(maximumSize)
+            .recordStats()
+            .build();
+    }
+
+    private static ValidationResult parse(final String expression) {
         // let the parser do the work of verifying whether or not the
         // expression is valid.
-        final Expression expr = parser.parseExpression(expression, context);
+        final Expression expr;
+        try {
+            expr = parser.parseExpression(expression, context);
+        } catch (ParseException e) {
+            return new ValidationResult(e);
+        }
         if (!(expr instanceof SpelExpression)) {
-            throw new SpelParseException(
+            return new ValidationResult(new SpelParseException(
                 expression,
                 0,
-                SpelMessage.NOT_EXPECTED_TOKEN, "${", expression);
+                SpelMessage.NOT_EXPECTED_TOKEN, "${", expression));
+        }
+        return VALID;
+    }
+
+    /**
+     * The outcome of parsing an expression: either valid, or the exception thrown by the parser.
+     */
+    private static final class ValidationResult {
+        private final ParseException failure;
+
+        private ValidationResult(final ParseException failure) {
+            this.failure = failure;
+        }
+
+        void throwIfInvalid() {
+            if (failure == null) {
+                return;
+            }
+            // the cached exception is never thrown itself, so that each caller gets its own stack trace
+            if (failure instanceof SpelParseException) {
+                final SpelParseException spelFailure = (SpelParseException) failure;
+                throw new SpelParseException(spelFailure.getExpressionString(), spelFailure.getPosition(),
+                    spelFailure.getMessageCode(), spelFailure.getInserts());
+            }
+            throw new ParseException(failure.getExpressionString(), failure.getPosition(), failure.getSimpleMessage());
         }
     }
 }
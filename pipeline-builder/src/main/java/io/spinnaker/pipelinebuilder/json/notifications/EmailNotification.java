@@ -49,12 +49,12 @@ public class EmailNotification extends Notification {
 
     /** Email address to send the notification to. */
     @JsonProperty
-    private String address;
+    private final String address;
 
     /** CC address to send an email copy to. */
     @JsonProperty
     @Builder.Default
-    private String cc = null;
+    private final String cc = null;
 
     /**
      * A set of message used to indicate whether or not to notify.
@@ -62,7 +62,7 @@ public class EmailNotification extends Notification {
      * A custom message can be provided for the specific event.
      */
     @Builder.Default
-    private Map<NotificationEvent, String> message = Collections.emptyMap();
+    private final Map<NotificationEvent, String> message = Collections.emptyMap();
 
     @JsonProperty
     private final NotificationType type = NotificationType.EMAIL; // excluded from builder
@@ -17,6 +17,7 @@
 package io.spinnaker.pipelinebuilder.json.notifications;
 
 import io.spinnaker.pipelinebuilder.json.Stage;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -28,9 +29,6 @@ import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Strings;
 
-import lombok.Getter;
-import lombok.Setter;
-
 /**
  * Base class used for notification types such as {@link EmailNotification} and
  * {@link SlackNotification}.
@@ -45,8 +43,34 @@ public abstract class Notification {
 
     public abstract Map<NotificationEvent, String> getMessage(); // values declared as plain strings
 
+    /** The `message` and `when` fields computed by {@link #freeze()}, null until then. */
+    private volatile FrozenFields frozenFields;
+
+    /**
+     * Computes the serialized {@code message} and {@code when} fields once and keeps them, so that serializing the
+     * notification again (for example for each pipeline sharing it) does not rebuild them. The message map must not
+     * be modified after this call, since the changes would not be serialized.
+     *
+     * @return this notification
+     */
+    public Notification freeze() {
+        if (frozenFields == null) { // computing them twice in a race is harmless, the result is the same
+            Map<NotificationEvent, NotificationText> messageStructured = computeMessageStructured();
+            List<NotificationEvent> when = computeWhen();
+            frozenFields = new FrozenFields(
+                messageStructured == null ? null : Collections.unmodifiableMap(messageStructured),
+                when == null ? null : Collections.unmodifiableList(when));
+        }
+        return this;
+    }
+
     // `message` values are serialized with a wrapper here
     @JsonProperty("message") Map<NotificationEvent, NotificationText> getMessageStructured() {
+        FrozenFields frozen = frozenFields;
+        return frozen != null ? frozen.messageStructured : computeMessageStructured();
+    }
+
+    private Map<NotificationEvent, NotificationText> computeMessageStructured() {
         Map<NotificationEvent, String> message = getMessage();
         if (message == null) {
             return null;
@@ -60,14 +84,32 @@ public abstract class Notification {
 
     @JsonProperty("when")
     private List<NotificationEvent> getWhen() { // extracted from the messages map instead of duplicating entries
+        FrozenFields frozen = frozenFields;
+        return frozen != null ? frozen.when : computeWhen();
+    }
+
+    private List<NotificationEvent> computeWhen() {
         Map<NotificationEvent, String> message = getMessage();
         return message == null ? null : message.keySet().stream().collect(Collectors.toList());
     }
 
     /**
-     * level is set during {@link Pipeline#getNotifications()} or {@link Stage} constructor.
+     * The level is not stored in the notification, so that the same instance can be shared by several pipelines and
+     * stages: it comes from the {@link NotificationList} of the {@link Pipeline} or {@link Stage} being serialized,
+     * and is omitted when a notification is serialized on its own.
      */
-    @Getter
-    @Setter
-    @JsonProperty NotificationLevel level;
+    @JsonProperty("level")
+    private NotificationLevel getLevel() {
+        return NotificationList.currentLevel();
+    }
+
+    private static final class FrozenFields {
+        private final Map<NotificationEvent, NotificationText> messageStructured;
+        private final List<NotificationEvent> when;
+
+        private FrozenFields(final Map<NotificationEvent, NotificationText> messageStructured, final List<NotificationEvent> when) {
+            this.messageStructured = messageStructured;
+            this.when = when;
+        }
+    }
 }
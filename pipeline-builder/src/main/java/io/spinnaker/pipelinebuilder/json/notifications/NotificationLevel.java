@@ -21,8 +21,8 @@ import com.fasterxml.jackson.annotation.JsonValue;
 /**
  * Depicts at what level the notification lives.
  *
- * This is automatically set when building a stage or a pipeline that has
- * notifications.
+ * This is automatically written when serializing a stage or a pipeline that
+ * has notifications.
  */
 public enum NotificationLevel {
     PIPELINE,
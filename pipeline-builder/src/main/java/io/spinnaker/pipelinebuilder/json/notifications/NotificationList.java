@@ -0,0 +1,138 @@
+/*
+ * Copyright 2023 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.spinnaker.pipelinebuilder.json.notifications;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import io.spinnaker.pipelinebuilder.json.Pipeline;
+import io.spinnaker.pipelinebuilder.json.Stage;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonFragment;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonFragmentCache;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import lombok.Getter;
+
+/**
+ * The notifications of a {@link Pipeline} or a {@link Stage}, as an immutable list.
+ *
+ * The level of each notification is written in the JSON while the list is
+ * being serialized, instead of being stored in the notifications themselves:
+ * a notification can then be shared by any number of pipelines and stages,
+ * including ones built and serialized concurrently.
+ *
+ * A list that is {@linkplain #share() shared} by many pipelines or stages,
+ * e.g. a standard set of notifications passed to each of their builders, is
+ * serialized once and its JSON copied as is into each of them.
+ */
+@JsonSerialize(using = NotificationList.Serializer.class)
+public final class NotificationList extends AbstractList<Notification> implements RandomAccess, JsonFragment {
+    /** Level of the notifications being serialized on the current thread. */
+    private static final ThreadLocal<NotificationLevel> currentLevel = new ThreadLocal<>();
+
+    @Getter private final NotificationLevel level;
+    private final List<Notification> notifications;
+    @Getter private volatile JsonFragmentCache jsonFragmentCache; // null until the list is shared
+
+    public NotificationList(final NotificationLevel level, final List<Notification> notifications) {
+        this.level = level;
+        this.notifications = List.copyOf(notifications);
+    }
+
+    /**
+     * @return the notifications themselves if they already are a list of this level, or a new list otherwise
+     */
+    public static NotificationList of(final NotificationLevel level, final List<Notification> notifications) {
+        if (notifications instanceof NotificationList && ((NotificationList) notifications).level == level) {
+            return (NotificationList) notifications;
+        }
+        return new NotificationList(level, notifications);
+    }
+
+    /**
+     * Freezes the notifications and caches the JSON of the list the first time it is serialized, to reuse the same
+     * list in many pipelines or stages.
+     *
+     * @return this list
+     */
+    public synchronized NotificationList share() {
+        if (jsonFragmentCache == null) {
+            notifications.forEach(Notification::freeze);
+            jsonFragmentCache = new JsonFragmentCache();
+        }
+        return this;
+    }
+
+    @Override
+    public Notification get(final int index) {
+        return notifications.get(index);
+    }
+
+    @Override
+    public int size() {
+        return notifications.size();
+    }
+
+    /**
+     * @return the level of the list being serialized on the current thread, or null outside of a list
+     */
+    static NotificationLevel currentLevel() {
+        return currentLevel.get();
+    }
+
+    static class Serializer extends StdSerializer<NotificationList> {
+        Serializer() {
+            super(NotificationList.class);
+        }
+
+        @Override
+        public void serialize(final NotificationList list, final JsonGenerator gen, final SerializerProvider provider) throws IOException {
+            final JsonFragmentCache cache = list.jsonFragmentCache;
+            if (cache == null || !cache.writeCached(gen, provider, fragmentGen -> writeNotifications(list, fragmentGen, provider))) {
+                writeNotifications(list, gen, provider);
+            }
+        }
+
+        private static void writeNotifications(final NotificationList list, final JsonGenerator gen, final SerializerProvider provider) throws IOException {
+            final NotificationLevel enclosingLevel = currentLevel.get();
+            currentLevel.set(list.level);
+            try {
+                gen.writeStartArray(list, list.size());
+                for (Notification notification : list.notifications) {
+                    provider.defaultSerializeValue(notification, gen);
+                }
+                gen.writeEndArray();
+            } finally {
+                if (enclosingLevel == null) {
+                    currentLevel.remove();
+                } else {
+                    currentLevel.set(enclosingLevel);
+                }
+            }
+        }
+
+        @Override
+        public boolean isEmpty(final SerializerProvider provider, final NotificationList list) {
+            return list.isEmpty();
+        }
+    }
+}
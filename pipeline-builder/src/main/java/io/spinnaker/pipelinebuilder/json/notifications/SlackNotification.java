@@ -60,7 +60,7 @@ public class SlackNotification extends Notification {
      * The Slack channel to send notifications to.
      */
     @JsonProperty("address")
-    private String channel;
+    private final String channel;
 
     /**
      * A set of message used to indicate whether to notify.
@@ -68,7 +68,7 @@ public class SlackNotification extends Notification {
      * A custom message can be provided for the specific event.
      */
     @Builder.Default
-    private Map<NotificationEvent, String> message = Collections.emptyMap();
+    private final Map<NotificationEvent, String> message = Collections.emptyMap();
 
     @JsonProperty
     private final NotificationType type = NotificationType.SLACK; // excluded from builder
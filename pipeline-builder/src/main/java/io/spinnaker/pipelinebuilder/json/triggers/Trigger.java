@@ -16,8 +16,8 @@
 
 package io.spinnaker.pipelinebuilder.json.triggers;
 
+import io.spinnaker.pipelinebuilder.json.DeterministicIdScope;
 import java.util.List;
-import java.util.UUID;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 
@@ -30,7 +30,8 @@ public abstract class Trigger {
     /**
      * An id that is used to distinguish from other Triggers.
      *
-     * If no id was specified, a random UUID will be used.
+     * If no id was specified, a random UUID will be used, or one derived from the
+     * pipeline within a {@link DeterministicIdScope}.
      */
     private final String id;
     /** Used to dictate whether or not the trigger is enabled*/
@@ -48,7 +49,7 @@ public abstract class Trigger {
     private final List<String> expectedArtifactIds;
 
     protected Trigger(String id, Boolean enabled, String runAsUser, List<String> expectedArtifactIds) {
-        this.id = id != null ? id : UUID.randomUUID().toString();
+        this.id = id != null ? id : DeterministicIdScope.nextId("trigger");
         this.enabled = enabled != null ? enabled : true;
         this.runAsUser = runAsUser;
         this.expectedArtifactIds = expectedArtifactIds;
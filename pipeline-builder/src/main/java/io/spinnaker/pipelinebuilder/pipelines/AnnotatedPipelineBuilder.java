@@ -0,0 +1,56 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.spinnaker.pipelinebuilder.pipelines;
+
+/**
+ * A {@link JsonPipelineBuilder} whose unique name is declared with the {@link PipelineUniqueName} annotation of its
+ * class, so that {@link PipelineIdRegistry} computes its pipeline ID without instantiating it:
+ * <pre>
+ * &#64;PipelineUniqueName("deploy-to-production")
+ * public class DeployPipelineBuilder extends AnnotatedPipelineBuilder {
+ *     &#64;Override
+ *     protected Pipeline buildPipeline() { ... }
+ * }
+ * </pre>
+ *
+ * <p>The annotation is checked when the builder is created, since a missing one can't be detected at compile time
+ * the way a missing {@link #getUniqueName()} implementation is.</p>
+ */
+public abstract class AnnotatedPipelineBuilder extends JsonPipelineBuilder {
+    private final String uniqueName;
+
+    /**
+     * @throws IllegalStateException if the class is not annotated with {@link PipelineUniqueName}
+     */
+    protected AnnotatedPipelineBuilder() {
+        PipelineUniqueName annotation = getClass().getAnnotation(PipelineUniqueName.class);
+        if (annotation == null) {
+            throw new IllegalStateException(getClass().getName() + " extends " + AnnotatedPipelineBuilder.class.getSimpleName()
+                + " but is not annotated with @" + PipelineUniqueName.class.getSimpleName());
+        }
+        this.uniqueName = annotation.value();
+    }
+
+    /**
+     * @return the value of the {@link PipelineUniqueName} annotation of the class
+     */
+    @Override
+    public String getUniqueName() {
+        return uniqueName;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.spinnaker.pipelinebuilder.pipelines;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Results of a {@link BulkPipelineGenerator} run, listed in the same order as the builders that were provided.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public class BulkGenerationReport {
+    /** One result per builder, in input order. */
+    private final List<PipelineGenerationResult> results;
+    /** Wall-clock time for the whole batch. */
+    private final Duration elapsedTime;
+
+    public List<PipelineGenerationResult> getSuccesses() {
+        return results.stream()
+            .filter(PipelineGenerationResult::isSuccessful)
+            .collect(Collectors.toList());
+    }
+
+    public List<PipelineGenerationResult> getFailures() {
+        return results.stream()
+            .filter(result -> !result.isSuccessful())
+            .collect(Collectors.toList());
+    }
+
+    public boolean hasFailures() {
+        return results.stream().anyMatch(result -> !result.isSuccessful());
+    }
+
+    /**
+     * @return the sum of the time spent generating each pipeline, which exceeds the elapsed time when running in parallel
+     */
+    public Duration getCumulativeTime() {
+        return results.stream()
+            .map(PipelineGenerationResult::getTotalTime)
+            .reduce(Duration.ZERO, Duration::plus);
+    }
+
+    /**
+     * Describes the run with one line per builder, slowest first.
+     *
+     * @return a human-readable summary of the timings and failures
+     */
+    public String toSummary() {
+        StringBuilder summary = new StringBuilder(String.format("Generated %d pipelines (%d failed) in %d ms, cumulative time %d ms%n",
+            results.size(), getFailures().size(), elapsedTime.toMillis(), getCumulativeTime().toMillis()));
+        results.stream()
+            .sorted(Comparator.comparing(PipelineGenerationResult::getTotalTime).reversed())
+            .forEach(result -> summary.append(String.format("  %-8s build %6d ms, serialization %6d ms  %s%s%n",
+                result.isSuccessful() ? "OK" : "FAILED",
+                result.getBuildTime().toMillis(),
+                result.getSerializationTime().toMillis(),
+                result.getBuilderName(),
+                result.isSuccessful() ? "" : ": " + result.getFailure())));
+        return summary.toString();
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.spinnaker.pipelinebuilder.pipelines;
+
+import io.spinnaker.pipelinebuilder.json.Pipeline;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Builds and serializes many pipelines concurrently.
+ *
+ * <p>Each builder runs {@link JsonPipelineBuilder#build()} followed by
+ * {@link Pipeline#toJson()} on the configured executor. Results are returned in
+ * the same order as the builders that were provided, regardless of the order
+ * in which they complete. A builder that throws does not abort the batch: its
+ * exception or error is recorded in its {@link PipelineGenerationResult},
+ * unless the error leaves the JVM itself in a bad state, e.g. an
+ * {@link OutOfMemoryError}, which is rethrown as is by {@link #generate}.</p>
+ *
+ * <h3>Example</h3>
+ * <pre>
+ * BulkGenerationReport report = BulkPipelineGenerator.builder()
+ *     .parallelism(8)
+ *     .build()
+ *     .generate(List.of(new MyFirstPipelineBuilder(), new MySecondPipelineBuilder()));
+ * report.getFailures().forEach(failure -&gt; ...);
+ * System.out.println(report.toSummary());
+ * </pre>
+ *
+ * <p>By default a dedicated {@link ForkJoinPool} sized to the number of
+ * available processors is created for each call to {@link #generate}. Any
+ * other {@link ExecutorService} can be provided instead, e.g. a virtual-thread
+ * executor on recent JDKs; it is not shut down by the generator.</p>
+ *
+ * <p>Each builder instance must only appear once per batch, since a builder is
+ * not expected to be used by several threads at the same time.</p>
+ */
+@Getter
+public class BulkPipelineGenerator {
+    /** Executor provided by the caller, null when the generator creates its own pool. */
+    private final ExecutorService executor;
+    /** Number of threads in the pool created by the generator when no executor is provided. */
+    private final int parallelism;
+
+    @Builder
+    public BulkPipelineGenerator(final ExecutorService executor, final Integer parallelism) {
+        if (executor != null && parallelism != null) {
+            throw new IllegalArgumentException("Invalid builder parameters: provide either executor or parallelism, but not both");
+        }
+        if (parallelism != null && parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1, got " + parallelism);
+        }
+        this.executor = executor;
+        this.parallelism = parallelism != null ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Builds and serializes all the pipelines.
+     *
+     * @param builders the pipeline builders, each already configured with its application and salt if needed
+     * @return the results, in the same order as {@code builders}
+     * @throws VirtualMachineError if a builder ran out of memory or hit another error after which the JVM can't be
+     * relied on
+     */
+    public BulkGenerationReport generate(final Collection<? extends JsonPipelineBuilder> builders) {
+        final long start = System.nanoTime();
+        final ExecutorService pool = executor != null ? executor : new ForkJoinPool(parallelism);
+        try {
+            List<CompletableFuture<PipelineGenerationResult>> futures = builders.stream()
+                .map(builder -> CompletableFuture.supplyAsync(() -> generateOne(builder), pool))
+                .collect(Collectors.toList());
+            List<PipelineGenerationResult> results = futures.stream()
+                .map(BulkPipelineGenerator::join)
+                .collect(Collectors.toList());
+            return new BulkGenerationReport(results, Duration.ofNanos(System.nanoTime() - start));
+        } finally {
+            if (executor == null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Waits for a result. Failures are captured in the result, so the future only completes exceptionally with the
+     * fatal errors of {@link #rethrowIfFatal}, which are rethrown without their {@link CompletionException} wrapper.
+     */
+    private static PipelineGenerationResult join(final CompletableFuture<PipelineGenerationResult> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Builds and serializes a single pipeline, capturing any failure and the time spent in each step.
+     */
+    static PipelineGenerationResult generateOne(final JsonPipelineBuilder builder) {
+        final long buildStart = System.nanoTime();
+        final Pipeline pipeline;
+        try {
+            pipeline = builder.build();
+        } catch (Throwable e) { // e.g. a StackOverflowError or NoClassDefFoundError only affects this builder
+            rethrowIfFatal(e);
+            return new PipelineGenerationResult(builder, null, null, e, Duration.ofNanos(System.nanoTime() - buildStart), Duration.ZERO);
+        }
+        final Duration buildTime = Duration.ofNanos(System.nanoTime() - buildStart);
+
+        final long serializationStart = System.nanoTime();
+        try {
+            String json = pipeline.toJson();
+            return new PipelineGenerationResult(builder, pipeline, json, null, buildTime, Duration.ofNanos(System.nanoTime() - serializationStart));
+        } catch (Throwable e) {
+            rethrowIfFatal(e);
+            return new PipelineGenerationResult(builder, null, null, e, buildTime, Duration.ofNanos(System.nanoTime() - serializationStart));
+        }
+    }
+
+    /**
+     * Rethrows the {@link VirtualMachineError}s after which no other pipeline can be generated reliably. A
+     * {@link StackOverflowError} is not one of them, since the stack has been unwound by the time it is caught.
+     */
+    private static void rethrowIfFatal(final Throwable throwable) {
+        if (throwable instanceof VirtualMachineError && !(throwable instanceof StackOverflowError)) {
+            throw (VirtualMachineError) throwable;
+        }
+    }
+
+    /**
+     * Finds pipeline builders registered as {@link ServiceLoader} providers, i.e. listed in a
+     * {@code META-INF/services/io.spinnaker.pipelinebuilder.pipelines.JsonPipelineBuilder} resource.
+     *
+     * @param classLoader the class loader used to find and instantiate the builders
+     * @return a new instance of each registered builder
+     */
+    public static List<JsonPipelineBuilder> discoverBuilders(final ClassLoader classLoader) {
+        List<JsonPipelineBuilder> builders = new ArrayList<>();
+        ServiceLoader.load(JsonPipelineBuilder.class, classLoader).forEach(builders::add);
+        return builders;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.spinnaker.pipelinebuilder.pipelines;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Results of a {@link PipelineUploader} run, listed in the same order as the pipelines that were provided.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public class BulkUploadReport {
+    /** One result per pipeline, in input order. */
+    private final List<PipelineUploadResult> results;
+    /** Wall-clock time for the whole upload. */
+    private final Duration elapsedTime;
+
+    public List<PipelineUploadResult> getFailures() {
+        return results.stream()
+            .filter(result -> !result.isSuccessful())
+            .collect(Collectors.toList());
+    }
+
+    public boolean hasFailures() {
+        return results.stream().anyMatch(result -> !result.isSuccessful());
+    }
+
+    /**
+     * Describes the run, with one line per failed pipeline.
+     *
+     * @return a human-readable summary of the upload
+     */
+    public String toSummary() {
+        List<PipelineUploadResult> failures = getFailures();
+        StringBuilder summary = new StringBuilder(String.format("Uploaded %d pipelines (%d failed) in %d ms%n",
+            results.size(), failures.size(), elapsedTime.toMillis()));
+        failures.forEach(result -> summary.append(String.format("  FAILED   %s (%s) after %d attempts: %s%n",
+            result.getPipeline().getName(), result.getPipeline().getId(), result.getAttempts(), result.getFailure())));
+        return summary.toString();
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.spinnaker.pipelinebuilder.pipelines;
+
+import io.spinnaker.pipelinebuilder.json.Pipeline;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonHelper;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonOutputMode;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.hash.Hashing;
+
+import lombok.Getter;
+
+/**
+ * Stores generated pipelines on disk, each under the SHA-256 of its canonical JSON.
+ *
+ * <p>The directory contains:</p>
+ * <ul>
+ *     <li>{@code objects/<first 2 characters of the hash>/<hash>.json}: the canonical JSON of each distinct pipeline
+ *     (see {@link JsonOutputMode#CANONICAL}), written once and never modified,</li>
+ *     <li>{@code index.json}: the hash of the current version of each pipeline, keyed by pipeline ID.</li>
+ * </ul>
+ *
+ * <p>Storing a pipeline whose hash is already in the index for its ID does not touch the disk, so a run where
+ * nothing changed only reads the index. A pipeline that goes back to a previous version reuses the object file of
+ * that version, unless it was removed with {@link #removeUnreferencedObjects()}.</p>
+ *
+ * <h3>Example</h3>
+ * <pre>
+ * try (ContentAddressedPipelineStore store = ContentAddressedPipelineStore.open(Paths.get("build/pipelines"))) {
+ *     for (JsonPipelineBuilder builder : builders) {
+ *         store.put(builder.build());
+ *     }
+ *     store.removeUnreferencedObjects();
+ * } // saves the index
+ * </pre>
+ *
+ * <p>{@link #put} can be called from several threads at once. The index is saved by {@link #close()}.</p>
+ */
+public class ContentAddressedPipelineStore implements AutoCloseable {
+    private static final TypeReference<Map<String, String>> INDEX_TYPE = new TypeReference<Map<String, String>>() {};
+
+    /** Root directory of the store. */
+    @Getter private final Path directory;
+    private final Map<String, String> hashesById;
+    private volatile boolean indexChanged = false;
+    /** Number of pipelines whose JSON was written to a new object file since the store was opened. */
+    private final AtomicInteger writtenCount = new AtomicInteger();
+    /** Number of pipelines that were already stored with the same content since the store was opened. */
+    private final AtomicInteger unchangedCount = new AtomicInteger();
+
+    private ContentAddressedPipelineStore(final Path directory, final Map<String, String> hashesById) {
+        this.directory = directory;
+        this.hashesById = new ConcurrentHashMap<>(hashesById);
+    }
+
+    /**
+     * Opens a store, creating it if the directory does not contain one.
+     *
+     * @param directory the root directory of the store
+     * @return the store, to be closed once all the pipelines have been stored
+     * @throws IOException if the index exists but cannot be read
+     */
+    public static ContentAddressedPipelineStore open(final Path directory) throws IOException {
+        Path indexFile = directory.resolve("index.json");
+        Map<String, String> hashesById = Files.isRegularFile(indexFile)
+            ? JsonHelper.getObjectMapper().readValue(indexFile.toFile(), INDEX_TYPE)
+            : Collections.emptyMap();
+        return new ContentAddressedPipelineStore(directory, hashesById);
+    }
+
+    /**
+     * Stores a pipeline, unless the same content is already stored for its ID.
+     *
+     * @param pipeline a pipeline with its ID set, as returned by {@link JsonPipelineBuilder#build()}
+     * @return the SHA-256 of the pipeline's canonical JSON
+     * @throws IOException if the pipeline cannot be written
+     */
+    public String put(final Pipeline pipeline) throws IOException {
+        if (pipeline.getId() == null) {
+            throw new IllegalArgumentException("Pipeline \"" + pipeline.getName() + "\" must have an ID to be stored");
+        }
+        byte[] json = pipeline.toJson(JsonOutputMode.CANONICAL).getBytes(StandardCharsets.UTF_8);
+        String hash = Hashing.sha256().hashBytes(json).toString();
+        if (hash.equals(hashesById.get(pipeline.getId()))) {
+            unchangedCount.incrementAndGet();
+            return hash;
+        }
+
+        Path objectFile = getObjectFile(hash);
+        if (Files.exists(objectFile)) { // same content as a previous version
+            unchangedCount.incrementAndGet();
+        } else {
+            writeObject(objectFile, json);
+            writtenCount.incrementAndGet();
+        }
+        hashesById.put(pipeline.getId(), hash);
+        indexChanged = true;
+        return hash;
+    }
+
+    /**
+     * @param pipelineId the ID of a pipeline
+     * @return the hash of the stored version of this pipeline, or null if it is not in the store
+     */
+    public String getHash(final String pipelineId) {
+        return hashesById.get(pipelineId);
+    }
+
+    /**
+     * @param pipelineId the ID of a pipeline
+     * @return the canonical JSON of the stored version of this pipeline, or null if it is not in the store
+     * @throws IOException if the object file cannot be read
+     */
+    public String read(final String pipelineId) throws IOException {
+        String hash = hashesById.get(pipelineId);
+        return hash != null ? new String(Files.readAllBytes(getObjectFile(hash)), StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * @return the hash of each stored pipeline, keyed by pipeline ID
+     */
+    public Map<String, String> getIndex() {
+        return Collections.unmodifiableMap(new TreeMap<>(hashesById));
+    }
+
+    /**
+     * @param hash the SHA-256 of a pipeline's canonical JSON
+     * @return the file where this content is stored
+     */
+    public Path getObjectFile(final String hash) {
+        return directory.resolve("objects").resolve(hash.substring(0, 2)).resolve(hash + ".json");
+    }
+
+    public int getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    public int getUnchangedCount() {
+        return unchangedCount.get();
+    }
+
+    /**
+     * Removes pipelines from the index, e.g. those whose builder no longer exists.
+     *
+     * @param pipelineIds the IDs of the pipelines to keep
+     */
+    public void retainAll(final Set<String> pipelineIds) {
+        if (hashesById.keySet().retainAll(pipelineIds)) {
+            indexChanged = true;
+        }
+    }
+
+    /**
+     * Deletes the object files that are not referenced by the index, such as previous versions of the pipelines.
+     *
+     * @return the number of deleted files
+     * @throws IOException if the objects cannot be listed or deleted
+     */
+    public int removeUnreferencedObjects() throws IOException {
+        Path objectsDirectory = directory.resolve("objects");
+        if (!Files.isDirectory(objectsDirectory)) {
+            return 0;
+        }
+        Set<Path> referenced = hashesById.values().stream()
+            .map(this::getObjectFile)
+            .collect(Collectors.toCollection(HashSet::new));
+        int removed = 0;
+        try (Stream<Path> files = Files.walk(objectsDirectory)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                if (!referenced.contains(file)) {
+                    Files.delete(file);
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Saves the index if it changed.
+     *
+     * @throws IOException if the index cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (indexChanged) {
+            writeAtomically(directory.resolve("index.json"),
+                JsonHelper.sortedWriter(true).writeValueAsBytes(new TreeMap<>(hashesById)), true);
+            indexChanged = false;
+        }
+    }
+
+    private static void writeObject(final Path objectFile, final byte[] json) throws IOException {
+        try {
+            writeAtomically(objectFile, json, false);
+        } catch (FileAlreadyExistsException e) {
+            // written concurrently by another thread storing the same content
+        }
+    }
+
+    /**
+     * Writes to a temporary file first and then renames it, so that readers never see a partially written file.
+     */
+    private static void writeAtomically(final Path file, final byte[] contents, final boolean replace) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temporaryFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporaryFile, contents);
+            if (replace) {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                Files.move(temporaryFile, file);
+            }
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+}
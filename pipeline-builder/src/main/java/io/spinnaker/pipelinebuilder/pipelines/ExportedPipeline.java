@@ -0,0 +1,61 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.spinnaker.pipelinebuilder.pipelines;
+
+import io.spinnaker.pipelinebuilder.json.Pipeline;
+import io.spinnaker.pipelinebuilder.json.PipelineReader;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A pipeline read from an export by a {@link PipelineExportReader}.
+ *
+ * The full JSON is only kept when the reader was not configured with {@code headersOnly}, in which case
+ * {@link #getContentHash()} is also set and the pipeline can be read into a {@link Pipeline} with {@link #toPipeline()}.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public class ExportedPipeline {
+    /** Position of the pipeline in the export, starting at 0. */
+    private final int position;
+    private final String id;
+    private final String application;
+    private final String name;
+    /** SHA-256 of the normalized canonical JSON, see {@link PipelineExportReader#contentHash(Pipeline)}; null in headers-only mode. */
+    private final String contentHash;
+    /** The pipeline as exported; null in headers-only mode. */
+    private final JsonNode contents;
+
+    /**
+     * Reads the exported JSON into a {@link Pipeline}, which is only done on demand since it is much more expensive
+     * than reading the headers.
+     *
+     * @return a new pipeline on each call
+     * @throws IllegalStateException if the export was read in headers-only mode
+     * @throws io.spinnaker.pipelinebuilder.exceptions.PipelineBuilderException if the JSON is not a valid pipeline
+     */
+    public Pipeline toPipeline() {
+        if (contents == null) {
+            throw new IllegalStateException("The contents of pipeline " + id + " were not read, the export was read in headers-only mode");
+        }
+        return PipelineReader.readPipeline(contents);
+    }
+}
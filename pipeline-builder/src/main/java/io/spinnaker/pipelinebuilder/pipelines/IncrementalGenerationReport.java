@@ -0,0 +1,49 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.spinnaker.pipelinebuilder.pipelines;
+
+import java.util.List;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Results of an {@link IncrementalPipelineGenerator} run.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public class IncrementalGenerationReport {
+    /** Builders whose inputs were unchanged, for which the previous output was kept without building them. */
+    private final List<JsonPipelineBuilder> reused;
+    /** Results of the builders that were built again, including failures. */
+    private final BulkGenerationReport rebuilt;
+
+    public boolean hasFailures() {
+        return rebuilt.hasFailures();
+    }
+
+    /**
+     * @return a human-readable summary of the pipelines that were reused and rebuilt
+     */
+    public String toSummary() {
+        StringBuilder summary = new StringBuilder(String.format("Reused %d pipelines, rebuilt %d%n",
+            reused.size(), rebuilt.getResults().size()));
+        reused.forEach(builder -> summary.append(String.format("  %-8s %s%n", "REUSED", builder.getClass().getName())));
+        summary.append(rebuilt.toSummary());
+        return summary.toString();
+    }
+}
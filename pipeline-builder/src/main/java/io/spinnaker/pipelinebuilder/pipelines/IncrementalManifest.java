@@ -0,0 +1,111 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.spinnaker.pipelinebuilder.pipelines;
+
+import io.spinnaker.pipelinebuilder.json.helpers.JsonHelper;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import lombok.Getter;
+
+/**
+ * The state saved by {@link IncrementalPipelineGenerator} between two runs: for each pipeline ID, the fingerprint
+ * of the builder that generated it and the hash of the JSON it produced.
+ */
+@Getter
+final class IncrementalManifest {
+    /** Incremented whenever the fingerprint computation changes, which invalidates older manifests. */
+    static final int FORMAT_VERSION = 2;
+
+    @JsonProperty private final int formatVersion;
+    @JsonProperty private final Map<String, Entry> pipelines;
+
+    @JsonCreator
+    IncrementalManifest(@JsonProperty("formatVersion") final int formatVersion,
+        @JsonProperty("pipelines") final Map<String, Entry> pipelines) {
+        this.formatVersion = formatVersion;
+        this.pipelines = pipelines != null ? new TreeMap<>(pipelines) : new TreeMap<>();
+    }
+
+    IncrementalManifest() {
+        this(FORMAT_VERSION, null);
+    }
+
+    /**
+     * Loads a manifest, or returns an empty one if the file does not exist, cannot be parsed, or was written with a
+     * different format version; in all these cases every pipeline is rebuilt.
+     */
+    static IncrementalManifest load(final Path manifestFile) throws IOException {
+        if (!Files.isRegularFile(manifestFile)) {
+            return new IncrementalManifest();
+        }
+        try {
+            IncrementalManifest manifest = JsonHelper.getObjectMapper().readValue(manifestFile.toFile(), IncrementalManifest.class);
+            return manifest.formatVersion == FORMAT_VERSION ? manifest : new IncrementalManifest();
+        } catch (JsonProcessingException e) {
+            return new IncrementalManifest();
+        }
+    }
+
+    /**
+     * Writes the manifest to a temporary file first, so that an interrupted run never leaves a truncated manifest.
+     */
+    void save(final Path manifestFile) throws IOException {
+        Path directory = manifestFile.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporaryFile = Files.createTempFile(directory, manifestFile.getFileName().toString(), ".tmp");
+        try {
+            JsonHelper.sortedWriter(true).writeValue(temporaryFile.toFile(), this);
+            Files.move(temporaryFile, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    /**
+     * What is known about one generated pipeline.
+     */
+    @Getter
+    static final class Entry {
+        /** Name of the builder class, for troubleshooting only. */
+        @JsonProperty private final String builderClass;
+        /** Hash of the builder's bytecode, salt, application and unique name. */
+        @JsonProperty private final String fingerprint;
+        /** SHA-256 of each resource read by the builder, keyed by resource URL. */
+        @JsonProperty private final Map<String, String> resources;
+        /** SHA-256 of the JSON written to the output file. */
+        @JsonProperty private final String outputHash;
+
+        @JsonCreator
+        Entry(@JsonProperty("builderClass") final String builderClass,
+            @JsonProperty("fingerprint") final String fingerprint,
+            @JsonProperty("resources") final Map<String, String> resources,
+            @JsonProperty("outputHash") final String outputHash) {
+            this.builderClass = builderClass;
+            this.fingerprint = fingerprint;
+            this.resources = resources != null ? new TreeMap<>(resources) : new TreeMap<>();
+            this.outputHash = outputHash;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.spinnaker.pipelinebuilder.pipelines;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Resources;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Generates pipelines into a directory, skipping the builders whose inputs have not changed since the previous run.
+ *
+ * <p>For each pipeline, a manifest file records a fingerprint of its builder and a hash of the JSON that was
+ * written. The fingerprint covers:</p>
+ * <ul>
+ *     <li>the bytecode of the builder class and of its superclasses, up to {@link JsonPipelineBuilder},</li>
+ *     <li>the salt, application and unique name of the builder, and whether it generates deterministic IDs,</li>
+ *     <li>the contents of the resources read with {@link JsonPipelineBuilder#getResourceContents}.</li>
+ * </ul>
+ *
+ * <p>When the fingerprint is unchanged and the output file still has the expected contents, the previous output is
+ * reused and {@link JsonPipelineBuilder#build()} is not called. Other builders are built and serialized with a
+ * {@link BulkPipelineGenerator}, and each pipeline is written to {@code <outputDirectory>/<pipelineId>.json}.</p>
+ *
+ * <h3>Example</h3>
+ * <pre>
+ * IncrementalGenerationReport report = IncrementalPipelineGenerator.builder()
+ *     .outputDirectory(Paths.get("build/pipelines"))
+ *     .build()
+ *     .generate(builders);
+ * System.out.println(report.toSummary());
+ * </pre>
+ *
+ * <p>Changes to other classes used by a builder (helpers, shared stage factories, or the pipeline-builder library
+ * itself) are not part of the fingerprint. Delete the manifest file to force a full regeneration after such a
+ * change, e.g. by keeping it in a build directory that is cleaned when dependencies are updated.</p>
+ */
+@Getter
+public class IncrementalPipelineGenerator {
+    public static final String DEFAULT_MANIFEST_FILE_NAME = ".pipeline-manifest.json";
+
+    /** Directory where the pipeline JSON files are written. */
+    private final Path outputDirectory;
+    /** File where fingerprints are saved between runs. */
+    private final Path manifestFile;
+    /** Generator used for the pipelines that need to be rebuilt. */
+    private final BulkPipelineGenerator generator;
+
+    /**
+     * @param outputDirectory the directory where pipelines are written, required
+     * @param manifestFile the manifest file, defaults to {@value #DEFAULT_MANIFEST_FILE_NAME} in the output directory
+     * @param generator the generator used to rebuild pipelines, defaults to a {@link BulkPipelineGenerator} with default settings
+     */
+    @Builder
+    public IncrementalPipelineGenerator(final Path outputDirectory, final Path manifestFile, final BulkPipelineGenerator generator) {
+        this.outputDirectory = Objects.requireNonNull(outputDirectory, "An output directory is required");
+        this.manifestFile = manifestFile != null ? manifestFile : outputDirectory.resolve(DEFAULT_MANIFEST_FILE_NAME);
+        this.generator = generator != null ? generator : BulkPipelineGenerator.builder().build();
+    }
+
+    /**
+     * Generates the pipelines whose inputs changed, and updates the manifest.
+     *
+     * Entries of the manifest for pipelines that are not part of {@code builders} are kept as-is, so that subsets of
+     * the pipelines can be generated independently. Builders that fail are removed from the manifest and are retried
+     * on the next run.
+     *
+     * @param builders the pipeline builders, each already configured with its application and salt if needed
+     * @return which pipelines were rebuilt and which were reused
+     * @throws IOException if the manifest or one of the output files could not be read or written
+     */
+    public IncrementalGenerationReport generate(final Collection<? extends JsonPipelineBuilder> builders) throws IOException {
+        final IncrementalManifest manifest = IncrementalManifest.load(manifestFile);
+        final Map<String, IncrementalManifest.Entry> entries = manifest.getPipelines();
+
+        final List<JsonPipelineBuilder> reused = new ArrayList<>();
+        final List<JsonPipelineBuilder> outdated = new ArrayList<>();
+        final Map<JsonPipelineBuilder, String> fingerprints = new LinkedHashMap<>();
+        for (JsonPipelineBuilder builder : builders) {
+            String fingerprint = computeFingerprint(builder);
+            fingerprints.put(builder, fingerprint);
+            String pipelineId = builder.computePipelineId();
+            IncrementalManifest.Entry entry = entries.get(pipelineId);
+            if (fingerprint != null && entry != null && fingerprint.equals(entry.getFingerprint())
+                && resourcesUnchanged(entry) && outputUnchanged(pipelineId, entry)) {
+                reused.add(builder);
+            } else {
+                outdated.add(builder);
+            }
+        }
+
+        final BulkGenerationReport rebuilt = generator.generate(outdated);
+        Files.createDirectories(outputDirectory);
+        for (PipelineGenerationResult result : rebuilt.getResults()) {
+            JsonPipelineBuilder builder = result.getBuilder();
+            String pipelineId = builder.computePipelineId();
+            if (!result.isSuccessful()) {
+                entries.remove(pipelineId);
+                continue;
+            }
+            byte[] json = result.getJson().getBytes(StandardCharsets.UTF_8);
+            Files.write(getOutputFile(pipelineId), json);
+            entries.put(pipelineId, new IncrementalManifest.Entry(
+                builder.getClass().getName(),
+                fingerprints.get(builder),
+                builder.getResourceHashes(),
+                Hashing.sha256().hashBytes(json).toString()));
+        }
+        manifest.save(manifestFile);
+
+        return new IncrementalGenerationReport(reused, rebuilt);
+    }
+
+    /**
+     * @param pipelineId the ID of a pipeline
+     * @return the file where this pipeline is written
+     */
+    public Path getOutputFile(final String pipelineId) {
+        return outputDirectory.resolve(pipelineId + ".json");
+    }
+
+    /**
+     * @return the fingerprint of the builder, or null if the bytecode of one of its classes cannot be found, in
+     * which case the builder is always rebuilt
+     */
+    static String computeFingerprint(final JsonPipelineBuilder builder) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        putString(hasher, builder.getSalt());
+        putString(hasher, builder.getApplication());
+        putString(hasher, builder.getUniqueName());
+        hasher.putBoolean(builder.isDeterministicIds());
+        for (Class<?> type = builder.getClass(); type != JsonPipelineBuilder.class; type = type.getSuperclass()) {
+            byte[] bytecode = readBytecode(type);
+            if (bytecode == null) {
+                return null;
+            }
+            putString(hasher, type.getName());
+            hasher.putInt(bytecode.length).putBytes(bytecode);
+        }
+        return hasher.hash().toString();
+    }
+
+    private static void putString(final Hasher hasher, final String value) {
+        if (value == null) {
+            hasher.putInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            hasher.putInt(bytes.length).putBytes(bytes);
+        }
+    }
+
+    private static byte[] readBytecode(final Class<?> type) {
+        ClassLoader classLoader = type.getClassLoader() != null ? type.getClassLoader() : ClassLoader.getSystemClassLoader();
+        try (InputStream inputStream = classLoader.getResourceAsStream(type.getName().replace('.', '/') + ".class")) {
+            return inputStream != null ? ByteStreams.toByteArray(inputStream) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static boolean resourcesUnchanged(final IncrementalManifest.Entry entry) {
+        for (Map.Entry<String, String> resource : entry.getResources().entrySet()) {
+            try {
+                // hashed a buffer at a time, like in JsonPipelineBuilder#getResourceArtifact
+                if (!Resources.asByteSource(new URL(resource.getKey())).hash(Hashing.sha256()).toString().equals(resource.getValue())) {
+                    return false;
+                }
+            } catch (IOException e) { // e.g. deleted, or moved to a different location
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean outputUnchanged(final String pipelineId, final IncrementalManifest.Entry entry) throws IOException {
+        Path outputFile = getOutputFile(pipelineId);
+        return Files.isRegularFile(outputFile)
+            && Hashing.sha256().hashBytes(Files.readAllBytes(outputFile)).toString().equals(entry.getOutputHash());
+    }
+}
@@ -16,16 +16,24 @@
 
 package io.spinnaker.pipelinebuilder.pipelines;
 
+import io.spinnaker.pipelinebuilder.json.DeterministicIdScope;
 import io.spinnaker.pipelinebuilder.json.Pipeline;
+import io.spinnaker.pipelinebuilder.json.StageIdScope;
+import io.spinnaker.pipelinebuilder.json.artifacts.StreamingBase64ArtifactDefinition;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.lang.reflect.Constructor;
+import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
 
-import com.google.common.base.Charsets;
 import com.google.common.base.Strings;
-import com.google.common.io.CharStreams;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Resources;
 
 import lombok.Getter;
 
@@ -52,6 +60,35 @@ public abstract class JsonPipelineBuilder {
     @Getter private String application = null;
 
     /**
+     * Whether triggers, expected artifacts and artifacts built without an ID
+     * get an ID derived from the pipeline ID instead of a random UUID, so that
+     * building the same pipeline twice produces the same JSON. See
+     * {@link DeterministicIdScope}.
+     */
+    @Getter private boolean deterministicIds = false;
+
+    /**
+     * SHA-256 of each resource read with {@link #getResourceContents} or {@link #getResourceArtifact}, keyed by resource URL.
+     * Used by {@link IncrementalPipelineGenerator} to detect changes in the inputs of this builder.
+     */
+    private final Map<String, String> resourceHashes = new TreeMap<>();
+
+    /**
+     * The entries of {@link #resourceHashes} recorded before the first build, e.g. by a constructor or field
+     * initializers reading a resource. They are kept across builds, unlike the ones recorded by {@link #buildPipeline()}.
+     */
+    private Map<String, String> constructionResourceHashes;
+
+    /**
+     * IDs returned by {@link #computePipelineIdForClass} during the last build, other than this builder's own.
+     * Used by {@link PipelineDependencyGraph} to find references that do not appear in triggers or stages.
+     */
+    private final Set<String> referencedPipelineIds = new LinkedHashSet<>();
+
+    /**
+     * Builders declaring their unique name with {@link PipelineUniqueName} can extend {@link AnnotatedPipelineBuilder}
+     * instead of implementing this method.
+     *
      * @return A unique name identifying this pipeline, also used to generate its storage UUID.
      */
     public abstract String getUniqueName();
@@ -63,13 +100,31 @@ public abstract class JsonPipelineBuilder {
 
     /**
      * build returns a new Pipeline that can be converted to JSON using the
-     * toJson method
+     * toJson method.
+     *
+     * Stages created by {@link #buildPipeline()} without an explicit ID are
+     * numbered from 1 within a {@link StageIdScope}, so the output does not
+     * depend on other pipelines built before or concurrently with this one.
+     * With {@link #setDeterministicIds}, the same applies to the default IDs
+     * of triggers and artifacts, within a {@link DeterministicIdScope}.
      */
     public Pipeline build() {
-        final Pipeline generatedPipeline = buildPipeline();
+        checkUniqueName();
+        referencedPipelineIds.clear();
+        if (constructionResourceHashes == null) {
+            constructionResourceHashes = new TreeMap<>(resourceHashes);
+        }
+        resourceHashes.clear();
+        resourceHashes.putAll(constructionResourceHashes);
 
         // generate deterministic ID based on the "unique name" associated with this pipeline builder
-        generatedPipeline.setId(computePipelineId());
+        final String pipelineId = computePipelineId();
+        final Pipeline generatedPipeline;
+        try (StageIdScope scope = StageIdScope.open();
+             DeterministicIdScope idScope = deterministicIds ? DeterministicIdScope.open(pipelineId) : null) {
+            generatedPipeline = buildPipeline();
+        }
+        generatedPipeline.setId(pipelineId);
 
         if (!Strings.isNullOrEmpty(application)) {
             generatedPipeline.setApplication(application);
@@ -78,10 +133,21 @@ public abstract class JsonPipelineBuilder {
         return generatedPipeline;
     }
 
-    private String computePipelineId() {
+    String computePipelineId() {
         // generate pipeline ID based on unique name + salt
-        final String saltedUniqueName = salt + getUniqueName();
-        return UUID.nameUUIDFromBytes(saltedUniqueName.getBytes(StandardCharsets.UTF_8)).toString();
+        return PipelineIdRegistry.computePipelineId(salt, getUniqueName());
+    }
+
+    /**
+     * Makes sure that an overridden {@link #getUniqueName()} agrees with the annotation that
+     * {@link PipelineIdRegistry} uses to compute the ID of this builder's pipeline from its class.
+     */
+    private void checkUniqueName() {
+        PipelineUniqueName annotation = getClass().getAnnotation(PipelineUniqueName.class);
+        if (annotation != null && !annotation.value().equals(getUniqueName())) {
+            throw new IllegalStateException(String.format("%s is annotated with @%s(\"%s\") but getUniqueName() returns \"%s\"",
+                getClass().getName(), PipelineUniqueName.class.getSimpleName(), annotation.value(), getUniqueName()));
+        }
     }
 
     /**
@@ -89,18 +155,26 @@ public abstract class JsonPipelineBuilder {
      *
      * An empty salt will be used if no salt has been set using {@link #setSalt}
      *
-     * @return the result of calling `computePipelineId` on an object built from the provided pipeline builder class.
+     * IDs are cached by {@link PipelineIdRegistry}. A builder class that is not
+     * annotated with {@link PipelineUniqueName} is instantiated once per salt and
+     * application, which are set on the new builder before calling its
+     * {@link #getUniqueName()}.
+     *
+     * @return the ID of the pipeline built by the provided pipeline builder class with the salt of this builder.
      */
     protected String computePipelineIdForClass(Class<? extends JsonPipelineBuilder> builderClass) {
-        try {
-            Constructor<? extends JsonPipelineBuilder> constructor = builderClass.getDeclaredConstructor(new Class[0]);
-            JsonPipelineBuilder builder = constructor.newInstance();
-            builder.setApplication(getApplication());
-            builder.setSalt(getSalt());
-            return builder.computePipelineId();
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to instantiate builder of type " + builderClass.getSimpleName(), e);
+        String pipelineId = PipelineIdRegistry.getPipelineId(builderClass, getSalt(), getApplication());
+        if (builderClass != getClass()) {
+            referencedPipelineIds.add(pipelineId);
         }
+        return pipelineId;
+    }
+
+    /**
+     * @return the IDs of other pipelines computed with {@link #computePipelineIdForClass} during the last build
+     */
+    Set<String> getReferencedPipelineIds() {
+        return Collections.unmodifiableSet(referencedPipelineIds);
     }
 
     /**
@@ -120,13 +194,49 @@ public abstract class JsonPipelineBuilder {
      */
     protected String getResourceContents(ClassLoader classLoader, String resourceName) {
         try {
-            InputStream inputStream = classLoader.getResourceAsStream(resourceName);
-            return CharStreams.toString(new InputStreamReader(inputStream, Charsets.UTF_8));
+            URL resource = classLoader.getResource(resourceName);
+            byte[] contents;
+            try (InputStream inputStream = resource.openStream()) {
+                contents = ByteStreams.toByteArray(inputStream);
+            }
+            resourceHashes.put(resource.toString(), Hashing.sha256().hashBytes(contents).toString());
+            return new String(contents, StandardCharsets.UTF_8);
         } catch (Exception e) {
             throw new RuntimeException("Failed to read resource", e);
         }
     }
 
+    /**
+     * Creates an embedded artifact from a resource without loading it in memory: the resource is streamed into the
+     * JSON output when the pipeline is serialized. Prefer this to {@link #getResourceContents} for large files.
+     * @param id the artifact ID, see {@link #computeStableIdForArtifact}
+     * @param name the artifact name
+     * @param classLoader the ClassLoader to fetch the resource from
+     * @param resourceName the file name
+     * @return the artifact
+     */
+    protected StreamingBase64ArtifactDefinition getResourceArtifact(String id, String name, ClassLoader classLoader, String resourceName) {
+        URL resource = classLoader.getResource(resourceName);
+        if (resource == null) {
+            throw new IllegalArgumentException("Artifact resource " + resourceName + " not found");
+        }
+        try {
+            // hashed a buffer at a time, so that incremental generation notices changes without loading the resource
+            resourceHashes.put(resource.toString(), Resources.asByteSource(resource).hash(Hashing.sha256()).toString());
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to read resource", e);
+        }
+        return StreamingBase64ArtifactDefinition.fromUrl(id, name, resource);
+    }
+
+    /**
+     * @return the SHA-256 of each resource read with {@link #getResourceContents} or {@link #getResourceArtifact}
+     * before the first build or during the last one, keyed by resource URL
+     */
+    Map<String, String> getResourceHashes() {
+        return Collections.unmodifiableMap(resourceHashes);
+    }
+
     /* manual setters so that we can return `this` and chain them */
 
     public <T extends JsonPipelineBuilder> T setApplication(final String application) {
@@ -138,4 +248,9 @@ public abstract class JsonPipelineBuilder {
         this.salt = salt;
         return (T) this;
     }
+
+    public <T extends JsonPipelineBuilder> T setDeterministicIds(final boolean deterministicIds) {
+        this.deterministicIds = deterministicIds;
+        return (T) this;
+    }
 }
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.spinnaker.pipelinebuilder.pipelines;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A single difference found by {@link PipelineDiff} between a generated pipeline and an existing one.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public class PipelineChange {
+
+    public enum Type {
+        /** The value is only present in the generated pipeline. */
+        ADDED,
+        /** The value is only present in the existing pipeline. */
+        REMOVED,
+        /** The value is present in both pipelines, but differs. */
+        MODIFIED
+    }
+
+    private final Type type;
+    /** Location of the value, e.g. {@code stages[refId=2].context.url} or {@code tags[0].value}. */
+    private final String path;
+    /** The value in the generated pipeline, null if it was removed. */
+    private final JsonNode generatedValue;
+    /** The value in the existing pipeline, null if it was added. */
+    private final JsonNode existingValue;
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case ADDED:
+                return "ADDED " + path + ": " + generatedValue;
+            case REMOVED:
+                return "REMOVED " + path + ": " + existingValue;
+            default:
+                return "MODIFIED " + path + ": " + existingValue + " -> " + generatedValue;
+        }
+    }
+}
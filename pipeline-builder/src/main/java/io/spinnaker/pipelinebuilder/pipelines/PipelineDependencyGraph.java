@@ -0,0 +1,344 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.spinnaker.pipelinebuilder.pipelines;
+
+import io.spinnaker.pipelinebuilder.json.Pipeline;
+import io.spinnaker.pipelinebuilder.json.Stage;
+import io.spinnaker.pipelinebuilder.json.stages.model.StageTypes;
+import io.spinnaker.pipelinebuilder.json.triggers.PipelineTrigger;
+import io.spinnaker.pipelinebuilder.json.triggers.Trigger;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import lombok.Getter;
+
+/**
+ * The references between a set of pipelines, recorded while building them.
+ *
+ * <p>A pipeline references another one when it is triggered by it (a
+ * {@link PipelineTrigger}), when it runs it (a stage of type
+ * {@link StageTypes#PIPELINE}), or when its builder computes its ID with
+ * {@link JsonPipelineBuilder#computePipelineIdForClass} for any other purpose.
+ * The referenced pipeline is a <em>dependency</em> of the referencing one, which
+ * is in turn one of its <em>dependents</em>. SpEL expressions such as
+ * {@code #pipelineId("nameOfPipeline")} are resolved by Spinnaker and are not
+ * references. References to pipelines that are not generated with the graph,
+ * e.g. pipelines of other applications or pipelines created in Spinnaker, are
+ * reported as {@linkplain #getDanglingReferences() dangling} but are not
+ * errors.</p>
+ *
+ * <h3>Example</h3>
+ * <pre>
+ * BulkPipelineGenerator generator = BulkPipelineGenerator.builder().build();
+ * PipelineDependencyGraph graph = PipelineDependencyGraph.build(builders, generator);
+ * graph.validate(); // no cycles
+ * ...
+ * BulkGenerationReport report = graph.rebuild(List.of(changedBuilder), generator);
+ * </pre>
+ *
+ * <p>Since pipeline IDs are computed from the builders' unique names, the
+ * pipelines can all be built at the same time: {@link #build} generates them
+ * in parallel and records their references. {@link #rebuild} then regenerates
+ * a subset of the builders along with all their dependents, one
+ * {@linkplain #getBuildLevels() level} at a time, each level in parallel.</p>
+ *
+ * <p>The graph reflects the pipelines as they were when it was built, and is
+ * not updated by {@link #rebuild}: build a new graph if the references
+ * between pipelines may have changed.</p>
+ */
+public class PipelineDependencyGraph {
+    /** The builders in the graph, in the order they were provided. */
+    @Getter private final List<JsonPipelineBuilder> builders;
+    /** The results of building all the pipelines. */
+    @Getter private final BulkGenerationReport report;
+    /**
+     * Pipeline IDs referenced by each builder but not built by any builder of the graph, e.g. pipelines of another
+     * application. They are only reported, since they may exist in Spinnaker without being generated.
+     */
+    @Getter private final Map<JsonPipelineBuilder, Set<String>> danglingReferences;
+
+    private final Map<JsonPipelineBuilder, Integer> indexByBuilder;
+    /** Indices of the builders referenced by each builder, i.e. its dependencies. */
+    private final List<Set<Integer>> dependencies;
+    /** Indices of the builders referencing each builder, i.e. its direct dependents. */
+    private final List<Set<Integer>> dependents;
+
+    private PipelineDependencyGraph(final List<JsonPipelineBuilder> builders, final BulkGenerationReport report) {
+        final int builderCount = builders.size();
+        this.builders = Collections.unmodifiableList(builders);
+        this.report = report;
+        this.indexByBuilder = new IdentityHashMap<>(builderCount);
+        final Map<String, Integer> indexByPipelineId = new HashMap<>(Math.max(16, builderCount * 2));
+        for (int i = 0; i < builderCount; i++) {
+            JsonPipelineBuilder builder = builders.get(i);
+            if (indexByBuilder.put(builder, i) != null) {
+                throw new IllegalArgumentException("Builder " + builder.getClass().getName() + " appears multiple times");
+            }
+            String pipelineId = builder.computePipelineId();
+            Integer other = indexByPipelineId.putIfAbsent(pipelineId, i);
+            if (other != null) {
+                throw new IllegalArgumentException(String.format("Builders %s and %s produce the same pipeline ID %s",
+                    builders.get(other).getClass().getName(), builder.getClass().getName(), pipelineId));
+            }
+        }
+
+        this.dependencies = new ArrayList<>(builderCount);
+        this.dependents = new ArrayList<>(builderCount);
+        for (int i = 0; i < builderCount; i++) {
+            dependencies.add(new TreeSet<>());
+            dependents.add(new TreeSet<>());
+        }
+        final Map<JsonPipelineBuilder, Set<String>> dangling = new LinkedHashMap<>();
+        for (PipelineGenerationResult result : report.getResults()) {
+            if (!result.isSuccessful()) {
+                continue; // nothing was recorded, the failure is in the report
+            }
+            final int index = indexByBuilder.get(result.getBuilder());
+            for (String referencedId : findReferences(result.getBuilder(), result.getPipeline())) {
+                Integer referenced = indexByPipelineId.get(referencedId);
+                if (referenced == null) {
+                    dangling.computeIfAbsent(result.getBuilder(), b -> new LinkedHashSet<>()).add(referencedId);
+                } else if (referenced != index) {
+                    dependencies.get(index).add(referenced);
+                    dependents.get(referenced).add(index);
+                }
+            }
+        }
+        this.danglingReferences = Collections.unmodifiableMap(dangling);
+    }
+
+    /**
+     * Builds all the pipelines in parallel and records the references between them.
+     *
+     * @param builders the pipeline builders, each already configured with its application and salt if needed
+     * @param generator the generator used to build the pipelines
+     * @return the graph of references between the pipelines
+     * @throws IllegalArgumentException if a builder appears more than once or two builders produce the same pipeline ID
+     */
+    public static PipelineDependencyGraph build(final Collection<? extends JsonPipelineBuilder> builders,
+        final BulkPipelineGenerator generator) {
+        List<JsonPipelineBuilder> builderList = new ArrayList<>(builders);
+        return new PipelineDependencyGraph(builderList, generator.generate(builderList));
+    }
+
+    /**
+     * @return the IDs of the pipelines referenced by the pipeline built with this builder, in order of appearance
+     */
+    private static Set<String> findReferences(final JsonPipelineBuilder builder, final Pipeline pipeline) {
+        Set<String> references = new LinkedHashSet<>();
+        for (Trigger trigger : pipeline.getTriggers()) {
+            if (trigger instanceof PipelineTrigger && !isExpression(((PipelineTrigger) trigger).getPipeline())) {
+                references.add(((PipelineTrigger) trigger).getPipeline());
+            }
+        }
+        for (Stage stage : pipeline.getStages()) {
+            Object pipelineId = stage.get("pipeline");
+            if (StageTypes.PIPELINE.equals(stage.getType()) && pipelineId instanceof String && !isExpression((String) pipelineId)) {
+                references.add((String) pipelineId);
+            }
+        }
+        references.addAll(builder.getReferencedPipelineIds());
+        references.remove(pipeline.getId());
+        return references;
+    }
+
+    /**
+     * @return whether the value is a SpEL expression evaluated by Spinnaker, e.g. {@code #pipelineId("name")} or
+     * {@code ${parameters.pipeline}}, rather than a pipeline ID
+     */
+    private static boolean isExpression(final String value) {
+        String trimmed = value.trim();
+        return trimmed.startsWith("#") || trimmed.startsWith("${");
+    }
+
+    /**
+     * @param builder a builder of the graph
+     * @return the builders of the pipelines it references, in input order
+     */
+    public List<JsonPipelineBuilder> getDependencies(final JsonPipelineBuilder builder) {
+        return toBuilders(dependencies.get(indexOf(builder)));
+    }
+
+    /**
+     * @param builder a builder of the graph
+     * @return the builders of the pipelines referencing it directly or indirectly, in input order
+     */
+    public List<JsonPipelineBuilder> getDependents(final JsonPipelineBuilder builder) {
+        Set<Integer> found = new TreeSet<>();
+        List<Integer> pending = new ArrayList<>(dependents.get(indexOf(builder)));
+        while (!pending.isEmpty()) {
+            int dependent = pending.remove(pending.size() - 1);
+            if (found.add(dependent)) {
+                pending.addAll(dependents.get(dependent));
+            }
+        }
+        found.remove(indexOf(builder)); // present if the builder is part of a cycle
+        return toBuilders(found);
+    }
+
+    /**
+     * Groups the builders so that each pipeline comes after all the pipelines it references. The builders of a level
+     * only reference builders of previous levels, so a level can be built in parallel once the previous ones are done.
+     *
+     * @return the builders, level by level, each level in input order
+     * @throws IllegalStateException if some pipelines reference each other in a cycle
+     */
+    public List<List<JsonPipelineBuilder>> getBuildLevels() {
+        Set<Integer> all = new TreeSet<>();
+        for (int i = 0; i < builders.size(); i++) {
+            all.add(i);
+        }
+        return getBuildLevels(all);
+    }
+
+    /**
+     * Same as {@link #getBuildLevels()}, for a subset of the builders: references to builders outside of the subset
+     * are ignored, and so are the cycles they are part of.
+     *
+     * @param included indices of the builders to place, sorted
+     */
+    private List<List<JsonPipelineBuilder>> getBuildLevels(final Set<Integer> included) {
+        final int[] remainingDependencies = new int[builders.size()];
+        List<Integer> level = new ArrayList<>();
+        for (int index : included) {
+            remainingDependencies[index] = (int) dependencies.get(index).stream()
+                .filter(included::contains)
+                .count();
+            if (remainingDependencies[index] == 0) {
+                level.add(index);
+            }
+        }
+
+        // Kahn's algorithm, one level at a time
+        List<List<JsonPipelineBuilder>> levels = new ArrayList<>();
+        int placed = 0;
+        while (!level.isEmpty()) {
+            levels.add(toBuilders(level));
+            placed += level.size();
+            Set<Integer> nextLevel = new TreeSet<>();
+            for (int index : level) {
+                for (int dependent : dependents.get(index)) {
+                    if (included.contains(dependent) && --remainingDependencies[dependent] == 0) {
+                        nextLevel.add(dependent);
+                    }
+                }
+            }
+            level = new ArrayList<>(nextLevel);
+        }
+        if (placed < included.size()) {
+            throw new IllegalStateException(describeCycle(remainingDependencies));
+        }
+        return levels;
+    }
+
+    /**
+     * Regenerates some of the pipelines together with all their dependents, level by level as described in
+     * {@link #getBuildLevels()}. The builders of each level are generated in parallel. Only the references between
+     * the regenerated pipelines are taken into account, so a cycle among other pipelines does not prevent them from
+     * being regenerated.
+     *
+     * @param changedBuilders builders of the graph whose pipelines need to be regenerated
+     * @param generator the generator used to build the pipelines
+     * @return the results, level by level
+     * @throws IllegalStateException if some of the pipelines to regenerate reference each other in a cycle
+     */
+    public BulkGenerationReport rebuild(final Collection<? extends JsonPipelineBuilder> changedBuilders,
+        final BulkPipelineGenerator generator) {
+        final long start = System.nanoTime();
+        Set<Integer> affected = new TreeSet<>();
+        for (JsonPipelineBuilder builder : changedBuilders) {
+            affected.add(indexOf(builder));
+            getDependents(builder).forEach(dependent -> affected.add(indexOf(dependent)));
+        }
+
+        List<PipelineGenerationResult> results = new ArrayList<>(affected.size());
+        for (List<JsonPipelineBuilder> level : getBuildLevels(affected)) {
+            results.addAll(generator.generate(level).getResults());
+        }
+        return new BulkGenerationReport(results, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * Checks that the pipelines can be built in order. References to pipelines outside of the graph are not checked,
+     * see {@link #getDanglingReferences()}.
+     *
+     * @throws IllegalArgumentException if some pipelines reference each other in a cycle, e.g. two pipelines
+     * triggering each other
+     */
+    public void validate() {
+        try {
+            getBuildLevels();
+        } catch (IllegalStateException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Finds one cycle among the builders left over by Kahn's algorithm. Each of them still references one of the
+     * others, so following these references eventually comes back to a builder that was already visited.
+     */
+    private String describeCycle(final int[] remainingDependencies) {
+        final int[] positionInWalk = new int[builders.size()];
+        Arrays.fill(positionInWalk, -1);
+        final List<Integer> walk = new ArrayList<>();
+        int index = 0;
+        while (remainingDependencies[index] == 0) {
+            index++;
+        }
+        while (positionInWalk[index] == -1) {
+            positionInWalk[index] = walk.size();
+            walk.add(index);
+            index = dependencies.get(index).stream()
+                .filter(dependency -> remainingDependencies[dependency] > 0)
+                .findFirst()
+                .orElseThrow(IllegalStateException::new); // never happens: left-over builders have left-over dependencies
+        }
+
+        List<String> cycle = new ArrayList<>();
+        for (int i = positionInWalk[index]; i < walk.size(); i++) {
+            cycle.add(builders.get(walk.get(i)).getUniqueName());
+        }
+        cycle.add(builders.get(index).getUniqueName());
+        return "Circular dependency found among the pipelines, each one referencing the next: " + String.join(" -> ", cycle);
+    }
+
+    private int indexOf(final JsonPipelineBuilder builder) {
+        Integer index = indexByBuilder.get(builder);
+        if (index == null) {
+            throw new IllegalArgumentException("Builder " + builder.getClass().getName() + " is not part of the graph");
+        }
+        return index;
+    }
+
+    private List<JsonPipelineBuilder> toBuilders(final Collection<Integer> indices) {
+        return indices.stream()
+            .map(builders::get)
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.spinnaker.pipelinebuilder.pipelines;
+
+import io.spinnaker.pipelinebuilder.json.Pipeline;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonHelper;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Compares generated pipelines with existing pipeline JSON, e.g. as returned by the Spinnaker API or written by a
+ * previous run, without comparing serialized strings.
+ *
+ * <p>Both pipelines are compared as JSON trees. Key order and number formatting are ignored ({@code 1} and
+ * {@code 1.0} are equal), and a missing field is considered equal to {@code null}, an empty list or an empty object,
+ * since the pipeline-builder omits empty fields but Spinnaker may store them. Stages are matched by {@code refId},
+ * and triggers and expected artifacts by {@code id}, so reordering them is not a change; other lists are compared
+ * element by element.</p>
+ *
+ * <h3>Example</h3>
+ * <pre>
+ * PipelineDiff pipelineDiff = PipelineDiff.builder().build();
+ * JsonNode existing = JsonHelper.getObjectMapper().readTree(existingJson);
+ * if (pipelineDiff.differs(pipeline, existing)) {
+ *     pipelineDiff.diff(pipeline, existing).forEach(System.out::println);
+ * }
+ * </pre>
+ *
+ * <p>Instances are immutable and can be shared by several threads.</p>
+ */
+@Getter
+public class PipelineDiff {
+    /** Fields set by Spinnaker when a pipeline is saved, ignored by default. */
+    public static final Set<String> DEFAULT_IGNORED_FIELDS = Set.of("updateTs", "lastModifiedBy", "index");
+
+    /** Field used to match the elements of lists with the given name. */
+    private static final Map<String, String> LIST_KEYS = Map.of(
+        "stages", "refId",
+        "triggers", "id",
+        "expectedArtifacts", "id");
+
+    /** Top-level pipeline fields that are not compared. */
+    private final Set<String> ignoredFields;
+
+    /**
+     * @param ignoredFields top-level pipeline fields that are not compared, defaults to {@link #DEFAULT_IGNORED_FIELDS}
+     */
+    @Builder
+    public PipelineDiff(final Set<String> ignoredFields) {
+        this.ignoredFields = ignoredFields != null ? Set.copyOf(ignoredFields) : DEFAULT_IGNORED_FIELDS;
+    }
+
+    /**
+     * @param generated the pipeline produced by a builder
+     * @param existing the existing pipeline, parsed as a tree
+     * @return all the differences, empty if the pipelines are equivalent
+     */
+    public List<PipelineChange> diff(final Pipeline generated, final JsonNode existing) {
+        return diff(toTree(generated), existing);
+    }
+
+    /**
+     * Compares two pipelines that are both in JSON form, e.g. the outputs of two runs.
+     *
+     * @param generated the new version of the pipeline
+     * @param existing the previous version of the pipeline
+     * @return all the differences, empty if the pipelines are equivalent
+     */
+    public List<PipelineChange> diff(final JsonNode generated, final JsonNode existing) {
+        List<PipelineChange> changes = new ArrayList<>();
+        compareObjects(generated, existing, "", true, changes, Integer.MAX_VALUE);
+        return changes;
+    }
+
+    /**
+     * Faster than {@link #diff(Pipeline, JsonNode)} when the differences themselves are not needed, since the
+     * comparison stops at the first difference.
+     *
+     * @param generated the pipeline produced by a builder
+     * @param existing the existing pipeline, parsed as a tree
+     * @return whether the pipelines differ
+     */
+    public boolean differs(final Pipeline generated, final JsonNode existing) {
+        return differs(toTree(generated), existing);
+    }
+
+    /**
+     * @param generated the new version of the pipeline
+     * @param existing the previous version of the pipeline
+     * @return whether the pipelines differ
+     */
+    public boolean differs(final JsonNode generated, final JsonNode existing) {
+        List<PipelineChange> changes = new ArrayList<>(1);
+        compareObjects(generated, existing, "", true, changes, 1);
+        return !changes.isEmpty();
+    }
+
+    private static JsonNode toTree(final Pipeline pipeline) {
+        // uses the same mapper as Pipeline.toJson(), without going through a string
+        return JsonHelper.getSortedObjectMapper().valueToTree(pipeline);
+    }
+
+    /**
+     * Compares two values, recording differences in {@code changes}.
+     *
+     * @return true once {@code maxChanges} differences have been found, meaning that the comparison must stop
+     */
+    private boolean compare(final JsonNode generated, final JsonNode existing, final String path,
+        final List<PipelineChange> changes, final int maxChanges) {
+        final boolean generatedEmpty = isEmpty(generated);
+        final boolean existingEmpty = isEmpty(existing);
+        if (generatedEmpty || existingEmpty) {
+            if (generatedEmpty && existingEmpty) {
+                return false;
+            }
+            return record(generatedEmpty
+                ? new PipelineChange(PipelineChange.Type.REMOVED, path, null, existing)
+                : new PipelineChange(PipelineChange.Type.ADDED, path, generated, null), changes, maxChanges);
+        }
+        if (generated.isObject() && existing.isObject()) {
+            return compareObjects(generated, existing, path, false, changes, maxChanges);
+        }
+        if (generated.isArray() && existing.isArray()) {
+            return compareArrays(generated, existing, path, changes, maxChanges);
+        }
+        if (!valuesEqual(generated, existing)) {
+            return record(new PipelineChange(PipelineChange.Type.MODIFIED, path, generated, existing), changes, maxChanges);
+        }
+        return false;
+    }
+
+    private boolean compareObjects(final JsonNode generated, final JsonNode existing, final String path, final boolean root,
+        final List<PipelineChange> changes, final int maxChanges) {
+        Iterator<Map.Entry<String, JsonNode>> generatedFields = generated.fields();
+        while (generatedFields.hasNext()) {
+            Map.Entry<String, JsonNode> field = generatedFields.next();
+            if (root && ignoredFields.contains(field.getKey())) {
+                continue;
+            }
+            JsonNode existingValue = existing.get(field.getKey());
+            boolean stop = existingValue != null && existingValue.isArray() && field.getValue().isArray() && LIST_KEYS.containsKey(field.getKey())
+                ? compareKeyedArrays(field.getValue(), existingValue, childPath(path, field.getKey()), LIST_KEYS.get(field.getKey()), changes, maxChanges)
+                : compare(field.getValue(), existingValue, childPath(path, field.getKey()), changes, maxChanges);
+            if (stop) {
+                return true;
+            }
+        }
+        Iterator<Map.Entry<String, JsonNode>> existingFields = existing.fields();
+        while (existingFields.hasNext()) {
+            Map.Entry<String, JsonNode> field = existingFields.next();
+            if ((root && ignoredFields.contains(field.getKey())) || generated.has(field.getKey())) {
+                continue;
+            }
+            if (compare(null, field.getValue(), childPath(path, field.getKey()), changes, maxChanges)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean compareArrays(final JsonNode generated, final JsonNode existing, final String path,
+        final List<PipelineChange> changes, final int maxChanges) {
+        final int size = Math.max(generated.size(), existing.size());
+        for (int i = 0; i < size; i++) {
+            if (compare(generated.get(i), existing.get(i), path + "[" + i + "]", changes, maxChanges)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compares lists whose elements are identified by a key field, regardless of their order. Falls back to comparing
+     * elements by position if some elements have no key, or if the same key is used more than once.
+     */
+    private boolean compareKeyedArrays(final JsonNode generated, final JsonNode existing, final String path, final String keyField,
+        final List<PipelineChange> changes, final int maxChanges) {
+        final Map<String, JsonNode> generatedByKey = indexByKey(generated, keyField);
+        final Map<String, JsonNode> existingByKey = indexByKey(existing, keyField);
+        if (generatedByKey == null || existingByKey == null) {
+            return compareArrays(generated, existing, path, changes, maxChanges);
+        }
+        for (Map.Entry<String, JsonNode> element : generatedByKey.entrySet()) {
+            String elementPath = path + "[" + keyField + "=" + element.getKey() + "]";
+            if (compare(element.getValue(), existingByKey.get(element.getKey()), elementPath, changes, maxChanges)) {
+                return true;
+            }
+        }
+        for (Map.Entry<String, JsonNode> element : existingByKey.entrySet()) {
+            if (generatedByKey.containsKey(element.getKey())) {
+                continue;
+            }
+            String elementPath = path + "[" + keyField + "=" + element.getKey() + "]";
+            if (compare(null, element.getValue(), elementPath, changes, maxChanges)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the elements indexed by their key in list order, or null if some elements have no key or share a key
+     */
+    private static Map<String, JsonNode> indexByKey(final JsonNode array, final String keyField) {
+        Map<String, JsonNode> byKey = new LinkedHashMap<>();
+        for (JsonNode element : array) {
+            JsonNode key = element.get(keyField);
+            if (key == null || !key.isValueNode() || key.isNull() || byKey.put(key.asText(), element) != null) {
+                return null;
+            }
+        }
+        return byKey;
+    }
+
+    private static boolean valuesEqual(final JsonNode generated, final JsonNode existing) {
+        if (generated.isNumber() && existing.isNumber()) {
+            return generated.decimalValue().compareTo(existing.decimalValue()) == 0;
+        }
+        return generated.equals(existing);
+    }
+
+    private static boolean isEmpty(final JsonNode node) {
+        return node == null || node.isNull() || node.isMissingNode() || (node.isContainerNode() && node.size() == 0);
+    }
+
+    private static boolean record(final PipelineChange change, final List<PipelineChange> changes, final int maxChanges) {
+        changes.add(change);
+        return changes.size() >= maxChanges;
+    }
+
+    private static String childPath(final String path, final String field) {
+        return path.isEmpty() ? field : path + "." + field;
+    }
+}
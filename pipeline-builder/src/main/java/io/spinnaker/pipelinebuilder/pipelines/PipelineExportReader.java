@@ -0,0 +1,204 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.spinnaker.pipelinebuilder.pipelines;
+
+import io.spinnaker.pipelinebuilder.json.Pipeline;
+import io.spinnaker.pipelinebuilder.json.PipelineReader;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonHelper;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonOutputMode;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Reads exports of many pipelines, such as a dump of all the pipelines stored in Front50, one pipeline at a time.
+ *
+ * <p>The export must be a JSON array of pipelines. Elements are parsed one by one from the stream, so memory use
+ * depends on the size of the largest pipeline and not on the size of the export, as long as the caller does not
+ * keep the {@link ExportedPipeline} objects around. For each pipeline the reader extracts its {@code id},
+ * {@code application} and {@code name}, as well as a content hash that can be compared with the hash of a generated
+ * pipeline to find the pipelines that differ without comparing them field by field:</p>
+ * <pre>
+ * PipelineExportReader reader = PipelineExportReader.builder().build();
+ * try (PipelineExportReader.ExportIterator exported = reader.read(inputStream)) {
+ *     while (exported.hasNext()) {
+ *         ExportedPipeline pipeline = exported.next();
+ *         if (!pipeline.getContentHash().equals(reader.contentHash(generatedPipelines.get(pipeline.getId())))) {
+ *             Pipeline existing = pipeline.toPipeline(); // only materialized when needed
+ *         }
+ *     }
+ * }
+ * </pre>
+ *
+ * <p>Hashes are computed on a normalized version of the JSON, with the same rules as {@link PipelineDiff}: the ignored
+ * top-level fields are left out, fields that are null, empty lists or empty objects are left out at any depth, and the
+ * result is written in {@link JsonOutputMode#CANONICAL} form. The contents of exported pipelines are kept as exported.
+ * In {@code headersOnly} mode, the rest of each pipeline is skipped by the parser without being read into a tree, and
+ * neither the hash nor the contents are available.</p>
+ *
+ * <p>Instances are immutable and can be shared by several threads; each iterator is meant for a single thread.</p>
+ */
+@Getter
+public class PipelineExportReader {
+    /** Top-level fields that are not part of the content hash. */
+    private final Set<String> ignoredFields;
+    /** Whether to only read the ID, application and name of each pipeline. */
+    private final boolean headersOnly;
+
+    /**
+     * @param ignoredFields top-level pipeline fields excluded from the hash, defaults to {@link PipelineDiff#DEFAULT_IGNORED_FIELDS}
+     * @param headersOnly whether to skip everything but the ID, application and name, defaults to false
+     */
+    @Builder
+    public PipelineExportReader(final Set<String> ignoredFields, final Boolean headersOnly) {
+        this.ignoredFields = ignoredFields != null ? Set.copyOf(ignoredFields) : PipelineDiff.DEFAULT_IGNORED_FIELDS;
+        this.headersOnly = headersOnly != null && headersOnly;
+    }
+
+    /**
+     * Starts reading an export; the stream is not closed by the iterator.
+     *
+     * @param inputStream UTF-8 encoded JSON, starting with an array
+     * @return an iterator over the pipelines of the export
+     * @throws IOException if the stream does not start with a JSON array
+     */
+    public ExportIterator read(final InputStream inputStream) throws IOException {
+        return new ExportIterator(PipelineReader.readArray(inputStream, this::readPipeline));
+    }
+
+    /**
+     * Computes the hash of a generated pipeline the same way as for exported pipelines.
+     *
+     * @param pipeline a pipeline with its ID and application set, since they are part of the exported JSON
+     * @return the SHA-256 of its normalized JSON, as a hex string
+     */
+    public String contentHash(final Pipeline pipeline) {
+        return contentHash(JsonHelper.getObjectMapper().<JsonNode>valueToTree(pipeline));
+    }
+
+    /**
+     * Normalizes the tree while writing it, so that it is neither copied nor modified.
+     */
+    private String contentHash(final JsonNode pipeline) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        try (OutputStream outputStream = Funnels.asOutputStream(hasher)) {
+            JsonHelper.writeCanonicalJson(outputStream, pipeline,
+                (depth, fieldName, value) -> !(depth == 0 && ignoredFields.contains(fieldName)) && !isEmpty(value));
+        } catch (IOException e) { // the hasher itself never fails
+            throw new UncheckedIOException("Failed to hash pipeline", e);
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * @return whether the value is null, an empty list, or an object that would be empty once normalized
+     */
+    private static boolean isEmpty(final JsonNode node) {
+        if (node.isObject()) {
+            for (Iterator<JsonNode> values = node.elements(); values.hasNext();) {
+                if (!isEmpty(values.next())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return node.isNull() || (node.isArray() && node.size() == 0);
+    }
+
+    private ExportedPipeline readPipeline(final JsonParser parser, final int position) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected a pipeline object at position " + position + ", got " + parser.currentToken());
+        }
+        if (headersOnly) {
+            return readHeaders(parser, position);
+        }
+        JsonNode contents = JsonHelper.getObjectMapper().readTree(parser);
+        return new ExportedPipeline(position, PipelineReader.text(contents, "id"), PipelineReader.text(contents, "application"),
+            PipelineReader.text(contents, "name"), contentHash(contents), contents);
+    }
+
+    /**
+     * Reads the top-level scalar fields and skips over all the others without building any tree.
+     */
+    private static ExportedPipeline readHeaders(final JsonParser parser, final int position) throws IOException {
+        String id = null;
+        String application = null;
+        String name = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            if (parser.nextToken().isScalarValue()) {
+                switch (field) {
+                    case "id":
+                        id = parser.getValueAsString();
+                        break;
+                    case "application":
+                        application = parser.getValueAsString();
+                        break;
+                    case "name":
+                        name = parser.getValueAsString();
+                        break;
+                    default:
+                        break;
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new ExportedPipeline(position, id, application, name, null, null);
+    }
+
+    /**
+     * Iterates over the pipelines of an export. Failures to parse the JSON are thrown as {@link UncheckedIOException}.
+     */
+    public static final class ExportIterator implements Iterator<ExportedPipeline>, Closeable {
+        private final PipelineReader.ArrayIterator<ExportedPipeline> pipelines;
+
+        private ExportIterator(final PipelineReader.ArrayIterator<ExportedPipeline> pipelines) {
+            this.pipelines = pipelines;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pipelines.hasNext();
+        }
+
+        @Override
+        public ExportedPipeline next() {
+            return pipelines.next();
+        }
+
+        @Override
+        public void close() throws IOException {
+            pipelines.close();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.spinnaker.pipelinebuilder.pipelines;
+
+import io.spinnaker.pipelinebuilder.json.Pipeline;
+import java.time.Duration;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The outcome of generating a single pipeline with a {@link BulkPipelineGenerator}.
+ *
+ * Exactly one of {@link #getJson()} and {@link #getFailure()} is set.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public class PipelineGenerationResult {
+    /** The builder that produced (or failed to produce) this pipeline. */
+    private final JsonPipelineBuilder builder;
+    /** The built pipeline, null if the generation failed. */
+    private final Pipeline pipeline;
+    /** The serialized pipeline, null if the generation failed. */
+    private final String json;
+    /** The exception or error thrown while building or serializing the pipeline, null on success. */
+    private final Throwable failure;
+    /** Time spent in {@link JsonPipelineBuilder#build()}. */
+    private final Duration buildTime;
+    /** Time spent serializing the pipeline, zero if the build failed. */
+    private final Duration serializationTime;
+
+    public boolean isSuccessful() {
+        return failure == null;
+    }
+
+    /**
+     * @return the total time spent generating this pipeline
+     */
+    public Duration getTotalTime() {
+        return buildTime.plus(serializationTime);
+    }
+
+    /**
+     * @return a name identifying the builder in reports, even if it failed
+     */
+    public String getBuilderName() {
+        return builder.getClass().getName();
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.spinnaker.pipelinebuilder.pipelines;
+
+import java.lang.reflect.Constructor;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * Process-wide cache of the pipeline IDs of builder classes, used by
+ * {@link JsonPipelineBuilder#computePipelineIdForClass}.
+ *
+ * <p>When a builder class is annotated with {@link PipelineUniqueName}, its
+ * pipeline ID only depends on the annotation and on the salt, so it is
+ * computed once per {@code (builder class, salt)} pair without instantiating
+ * the class. Otherwise the class is instantiated with its no-arg constructor
+ * once per {@code (builder class, salt, application)}, and the salt and
+ * application are set on the new builder before calling its
+ * {@link JsonPipelineBuilder#getUniqueName()}, which may depend on them.</p>
+ *
+ * <p>All methods can be called concurrently, e.g. by pipelines generated in
+ * parallel by a {@link BulkPipelineGenerator}. Entries are attached to the
+ * builder classes and do not prevent them from being unloaded.</p>
+ */
+@UtilityClass   // can't be instantiated
+public class PipelineIdRegistry {
+    private static final ClassValue<ClassEntry> entries = new ClassValue<>() {
+        @Override
+        protected ClassEntry computeValue(final Class<?> builderClass) {
+            PipelineUniqueName annotation = builderClass.getAnnotation(PipelineUniqueName.class);
+            return new ClassEntry(annotation != null ? annotation.value() : null);
+        }
+    };
+
+    /** The declared unique name of a builder class, if any, and the pipeline IDs computed so far. */
+    private static final class ClassEntry {
+        private final String annotatedUniqueName;
+        /** Keyed by salt and, for classes without annotation, application. */
+        private final ConcurrentMap<List<String>, String> pipelineIds = new ConcurrentHashMap<>();
+
+        private ClassEntry(final String annotatedUniqueName) {
+            this.annotatedUniqueName = annotatedUniqueName;
+        }
+    }
+
+    /**
+     * @param builderClass the pipeline builder class
+     * @param salt the salt, an empty string if there is none; null is accepted like in {@link #computePipelineId}
+     * @param application the application set on the builder before computing its unique name, if it is not annotated
+     * @return the ID of the pipelines built by {@code builderClass} with this salt and application
+     * @throws RuntimeException if the class has no {@link PipelineUniqueName} annotation and cannot be instantiated
+     */
+    public static String getPipelineId(final Class<? extends JsonPipelineBuilder> builderClass, final String salt,
+        final String application) {
+        final ClassEntry entry = entries.get(builderClass);
+        if (entry.annotatedUniqueName != null) {
+            return entry.pipelineIds.computeIfAbsent(Arrays.asList(salt, null), key -> computePipelineId(salt, entry.annotatedUniqueName));
+        }
+        return entry.pipelineIds.computeIfAbsent(Arrays.asList(salt, application), key -> {
+            JsonPipelineBuilder builder = instantiate(builderClass);
+            builder.setApplication(application);
+            builder.setSalt(salt);
+            return builder.computePipelineId();
+        });
+    }
+
+    /**
+     * Computes a pipeline ID without caching it.
+     *
+     * @param salt the salt, an empty string if there is none
+     * @param uniqueName the unique name of the pipeline
+     * @return the pipeline ID, a name-based UUID
+     */
+    static String computePipelineId(final String salt, final String uniqueName) {
+        final String saltedUniqueName = salt + uniqueName;
+        return UUID.nameUUIDFromBytes(saltedUniqueName.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    private static JsonPipelineBuilder instantiate(final Class<? extends JsonPipelineBuilder> builderClass) {
+        try {
+            Constructor<? extends JsonPipelineBuilder> constructor = builderClass.getDeclaredConstructor();
+            return constructor.newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to instantiate builder of type " + builderClass.getSimpleName(), e);
+        }
+    }
+}
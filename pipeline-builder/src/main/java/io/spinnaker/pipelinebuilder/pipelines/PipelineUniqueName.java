@@ -0,0 +1,51 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.spinnaker.pipelinebuilder.pipelines;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares the unique name of a {@link JsonPipelineBuilder} on its class.
+ *
+ * <p>Annotated builders extending {@link AnnotatedPipelineBuilder} do not need
+ * to implement {@link JsonPipelineBuilder#getUniqueName()}, and their pipeline
+ * ID can be computed by {@link PipelineIdRegistry} without instantiating
+ * them:</p>
+ * <pre>
+ * &#64;PipelineUniqueName("deploy-to-production")
+ * public class DeployPipelineBuilder extends AnnotatedPipelineBuilder {
+ *     &#64;Override
+ *     protected Pipeline buildPipeline() { ... }
+ * }
+ * </pre>
+ *
+ * <p>The annotation is not inherited, since two builder classes sharing a
+ * unique name would also share their pipeline ID.</p>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface PipelineUniqueName {
+    /**
+     * @return the unique name of the pipeline, see {@link JsonPipelineBuilder#getUniqueName()}
+     */
+    String value();
+}
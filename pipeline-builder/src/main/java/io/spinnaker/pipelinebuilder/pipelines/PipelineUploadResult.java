@@ -0,0 +1,47 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.spinnaker.pipelinebuilder.pipelines;
+
+import io.spinnaker.pipelinebuilder.json.Pipeline;
+import java.time.Duration;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The outcome of saving a single pipeline with a {@link PipelineUploader}.
+ *
+ * Pipelines sent in the same batch share the same status, attempts and time.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public class PipelineUploadResult {
+    /** The pipeline that was uploaded. */
+    private final Pipeline pipeline;
+    /** HTTP status of the last attempt, 0 if no response was received. */
+    private final int statusCode;
+    /** Number of requests sent, including retries. */
+    private final int attempts;
+    /** Why the upload failed, null on success. */
+    private final Exception failure;
+    /** Time spent uploading, including the delays between retries. */
+    private final Duration elapsedTime;
+
+    public boolean isSuccessful() {
+        return failure == null;
+    }
+}
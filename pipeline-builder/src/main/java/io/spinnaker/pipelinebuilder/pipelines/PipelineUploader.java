@@ -0,0 +1,304 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.spinnaker.pipelinebuilder.pipelines;
+
+import io.spinnaker.pipelinebuilder.json.Pipeline;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonHelper;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonOutputMode;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.google.common.collect.Lists;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Saves pipelines in Spinnaker through the Gate API, with several requests in flight at once.
+ *
+ * <p>Pipelines are sent as compact JSON to {@code POST /pipelines}, or in batches to {@code POST /pipelines/bulksave}
+ * when {@code batchSize} is greater than 1; the cached JSON of {@linkplain Pipeline#seal() sealed} pipelines is sent as
+ * is. Requests failing with an {@link IOException}, a 429 or a 5xx status are retried with exponential backoff and
+ * jitter, honoring the {@code Retry-After} header when present; other statuses fail immediately. A failed request does not abort the upload: it is recorded in the results of its pipelines. The
+ * pipelines that a bulk save lists as failed in its response are reported as failures as well.</p>
+ *
+ * <h3>Example</h3>
+ * <pre>
+ * BulkUploadReport report = PipelineUploader.builder()
+ *     .baseUrl(URI.create("https://gate.example.com"))
+ *     .headers(() -&gt; Map.of("Authorization", "Bearer " + tokenProvider.getToken()))
+ *     .maxConcurrentRequests(16)
+ *     .batchSize(50)
+ *     .build()
+ *     .upload(pipelines);
+ * System.out.println(report.toSummary());
+ * </pre>
+ *
+ * <p>By default, a single {@link HttpClient} preferring HTTP/2 is shared by all requests, so that they are multiplexed
+ * over a few connections when the server supports it. Each pipeline must have its application set, e.g. with
+ * {@link JsonPipelineBuilder#setApplication}.</p>
+ */
+@Getter
+public class PipelineUploader {
+    public static final String SAVE_PATH = "/pipelines";
+    public static final String BULK_SAVE_PATH = "/pipelines/bulksave";
+
+    /** Base URL of the Gate API, e.g. {@code https://gate.example.com}. */
+    private final URI baseUrl;
+    /** Client used for all requests. */
+    private final HttpClient httpClient;
+    /** Additional headers for each request, typically for authentication; called once per request. */
+    private final Supplier<Map<String, String>> headers;
+    /** Maximum number of requests in flight. */
+    private final int maxConcurrentRequests;
+    /** Number of pipelines per request; 1 uses the single-pipeline endpoint. */
+    private final int batchSize;
+    /** Maximum number of times a request is sent, including the first attempt. */
+    private final int maxAttempts;
+    /** Delay before the first retry, doubled after each attempt. */
+    private final Duration initialBackoff;
+    /** Upper bound for the delay between two attempts. */
+    private final Duration maxBackoff;
+    /** Timeout for each request. */
+    private final Duration requestTimeout;
+
+    @Builder
+    public PipelineUploader(final URI baseUrl, final HttpClient httpClient, final Supplier<Map<String, String>> headers,
+        final Integer maxConcurrentRequests, final Integer batchSize, final Integer maxAttempts,
+        final Duration initialBackoff, final Duration maxBackoff, final Duration requestTimeout) {
+        this.baseUrl = Objects.requireNonNull(baseUrl, "A base URL is required");
+        this.httpClient = httpClient != null ? httpClient : HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2) // falls back to HTTP/1.1 if the server does not support it
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+        this.headers = headers != null ? headers : Collections::emptyMap;
+        this.maxConcurrentRequests = requirePositive("maxConcurrentRequests", maxConcurrentRequests, 8);
+        this.batchSize = requirePositive("batchSize", batchSize, 1);
+        this.maxAttempts = requirePositive("maxAttempts", maxAttempts, 5);
+        this.initialBackoff = initialBackoff != null ? initialBackoff : Duration.ofMillis(500);
+        this.maxBackoff = maxBackoff != null ? maxBackoff : Duration.ofSeconds(30);
+        this.requestTimeout = requestTimeout != null ? requestTimeout : Duration.ofSeconds(60);
+    }
+
+    private static int requirePositive(final String name, final Integer value, final int defaultValue) {
+        if (value != null && value < 1) {
+            throw new IllegalArgumentException(name + " must be at least 1, got " + value);
+        }
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Saves all the pipelines, creating or updating them in Spinnaker.
+     *
+     * @param pipelines the pipelines to save, each with its ID and application set
+     * @return the results, in the same order as {@code pipelines}
+     * @throws IllegalArgumentException if a pipeline has no application
+     */
+    public BulkUploadReport upload(final Collection<Pipeline> pipelines) {
+        pipelines.forEach(pipeline -> {
+            if (pipeline.getApplication() == null) {
+                throw new IllegalArgumentException("Pipeline \"" + pipeline.getName() + "\" must have an application to be uploaded");
+            }
+        });
+
+        final long start = System.nanoTime();
+        final ExecutorService pool = Executors.newFixedThreadPool(maxConcurrentRequests);
+        try {
+            List<CompletableFuture<List<PipelineUploadResult>>> futures = Lists.partition(new ArrayList<>(pipelines), batchSize).stream()
+                .map(batch -> CompletableFuture.supplyAsync(() -> uploadBatch(batch), pool))
+                .collect(Collectors.toList());
+            List<PipelineUploadResult> results = futures.stream()
+                .flatMap(future -> future.join().stream()) // never completes exceptionally, failures are captured in the results
+                .collect(Collectors.toList());
+            return new BulkUploadReport(results, Duration.ofNanos(System.nanoTime() - start));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Sends one request for the batch, retrying it if needed.
+     */
+    private List<PipelineUploadResult> uploadBatch(final List<Pipeline> batch) {
+        final long start = System.nanoTime();
+        final String path = batchSize == 1 ? SAVE_PATH : BULK_SAVE_PATH;
+        final byte[] body;
+        try {
+            body = requestBody(path, batch);
+        } catch (IOException | RuntimeException e) { // e.g. an embedded artifact that can't be read
+            return results(batch, 0, 0, e, start);
+        }
+
+        int attempt = 0;
+        while (true) {
+            attempt++;
+            Duration retryAfter = null;
+            Exception failure;
+            int statusCode = 0;
+            try {
+                HttpResponse<String> response = httpClient.send(buildRequest(path, body), HttpResponse.BodyHandlers.ofString());
+                statusCode = response.statusCode();
+                if (statusCode >= 200 && statusCode < 300) {
+                    if (path.equals(BULK_SAVE_PATH)) {
+                        return bulkSaveResults(batch, statusCode, attempt, response.body(), start);
+                    }
+                    return results(batch, statusCode, attempt, null, start);
+                }
+                failure = new IOException("POST " + path + " failed with status " + statusCode + ": " + response.body());
+                if (statusCode != 429 && statusCode < 500) {
+                    return results(batch, statusCode, attempt, failure, start);
+                }
+                retryAfter = parseRetryAfter(response);
+            } catch (IOException e) {
+                failure = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return results(batch, statusCode, attempt, e, start);
+            } catch (RuntimeException e) { // e.g. an IllegalArgumentException for an invalid header, retrying would not help
+                return results(batch, statusCode, attempt, e, start);
+            }
+
+            if (attempt >= maxAttempts) {
+                return results(batch, statusCode, attempt, failure, start);
+            }
+            try {
+                Thread.sleep(retryAfter != null ? retryAfter.toMillis() : backoff(attempt).toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return results(batch, statusCode, attempt, e, start);
+            }
+        }
+    }
+
+    /**
+     * Writes the pipelines as compact JSON, copying the cached JSON of the {@linkplain Pipeline#seal() sealed} ones.
+     */
+    private static byte[] requestBody(final String path, final List<Pipeline> batch) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (path.equals(SAVE_PATH)) {
+            batch.get(0).writeJson(body, JsonOutputMode.COMPACT);
+            return body.toByteArray();
+        }
+        body.write('[');
+        for (int i = 0; i < batch.size(); i++) {
+            if (i > 0) {
+                body.write(',');
+            }
+            batch.get(i).writeJson(body, JsonOutputMode.COMPACT);
+        }
+        body.write(']');
+        return body.toByteArray();
+    }
+
+    private HttpRequest buildRequest(final String path, final byte[] body) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(baseUrl.resolve(baseUrl.getPath().replaceAll("/+$", "") + path))
+            .timeout(requestTimeout)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        headers.get().forEach(request::header);
+        return request.build();
+    }
+
+    /**
+     * @return the delay before the next attempt: exponential, capped at {@code maxBackoff}, with up to 50% of jitter
+     * so that throttled requests do not all come back at the same time
+     */
+    Duration backoff(final int attempt) {
+        long delay = initialBackoff.toMillis() << Math.min(attempt - 1, 30);
+        delay = Math.min(delay < 0 ? Long.MAX_VALUE : delay, maxBackoff.toMillis());
+        return Duration.ofMillis(delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+    }
+
+    private Duration parseRetryAfter(final HttpResponse<?> response) {
+        return response.headers().firstValue("Retry-After")
+            .map(value -> {
+                try {
+                    Duration delay = Duration.ofSeconds(Long.parseLong(value.trim()));
+                    return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+                } catch (NumberFormatException e) { // HTTP date, use the regular backoff
+                    return null;
+                }
+            })
+            .orElse(null);
+    }
+
+    /**
+     * Bulk saves report the pipelines they could not save in a successful response, e.g.
+     * {@code {"failed_pipelines": [{"id": "...", "name": "...", "errorMsg": "..."}], ...}}.
+     *
+     * @return the results of the batch, failed for the pipelines listed in the response
+     */
+    private static List<PipelineUploadResult> bulkSaveResults(final List<Pipeline> batch, final int statusCode, final int attempts,
+        final String responseBody, final long start) {
+        final Map<String, String> errorsById = new HashMap<>();
+        final Map<String, String> errorsByName = new HashMap<>();
+        try {
+            JsonNode report = JsonHelper.getObjectMapper().readTree(responseBody);
+            for (JsonNode failed : report != null ? report.path("failed_pipelines") : MissingNode.getInstance()) {
+                String errorMessage = failed.path("errorMsg").asText("unknown error");
+                if (failed.hasNonNull("id")) {
+                    errorsById.put(failed.get("id").asText(), errorMessage);
+                } else if (failed.hasNonNull("name")) {
+                    errorsByName.put(failed.get("name").asText(), errorMessage);
+                }
+            }
+        } catch (JsonProcessingException e) { // not a bulk save report, nothing was rejected that we know of
+            return results(batch, statusCode, attempts, null, start);
+        }
+
+        final Duration elapsedTime = Duration.ofNanos(System.nanoTime() - start);
+        return batch.stream()
+            .map(pipeline -> {
+                String errorMessage = pipeline.getId() != null && errorsById.containsKey(pipeline.getId())
+                    ? errorsById.get(pipeline.getId())
+                    : errorsByName.get(pipeline.getName());
+                Exception failure = errorMessage != null
+                    ? new IOException("POST " + BULK_SAVE_PATH + " rejected pipeline \"" + pipeline.getName() + "\": " + errorMessage)
+                    : null;
+                return new PipelineUploadResult(pipeline, statusCode, attempts, failure, elapsedTime);
+            })
+            .collect(Collectors.toList());
+    }
+
+    private static List<PipelineUploadResult> results(final List<Pipeline> batch, final int statusCode, final int attempts,
+        final Exception failure, final long start) {
+        Duration elapsedTime = Duration.ofNanos(System.nanoTime() - start);
+        return batch.stream()
+            .map(pipeline -> new PipelineUploadResult(pipeline, statusCode, attempts, failure, elapsedTime))
+            .collect(Collectors.toList());
+    }
+}
@@ -16,10 +16,16 @@
 
 package io.spinnaker.pipelinebuilder.json.artifacts;
 
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.stream.Stream;
@@ -61,4 +67,41 @@ class Base64ArtifactDefinitionTest {
                 Arguments.of(content, content, false)
         );
     }
+
+    @Test
+    public void referenceIsComputedOnce() {
+        Base64ArtifactDefinition artifact = Base64ArtifactDefinition.builder()
+                .contents("hello world")
+                .build();
+        assertSame(artifact.getReference(), artifact.getReference());
+    }
+
+    @Test
+    public void referenceFromBytesStreamOrPath() throws IOException {
+        String content = "replicaCount: 3\nimage: example/app:1.0.0\n";
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        String expected = Base64ArtifactDefinition.builder().contents(content).build().getReference();
+
+        assertEquals(expected, Base64ArtifactDefinition.builder().contentBytes(bytes).build().getReference());
+        assertEquals(content, Base64ArtifactDefinition.builder().contentBytes(bytes).shouldEncode(false).build().getReference());
+        assertEquals(expected, Base64ArtifactDefinition.fromStream("id", "values.yml", new ByteArrayInputStream(bytes)).getReference());
+
+        Path file = Files.createTempFile("artifact", ".yml");
+        try {
+            Files.write(file, bytes);
+            Base64ArtifactDefinition artifact = Base64ArtifactDefinition.fromPath("id", "values.yml", file);
+            assertEquals(expected, artifact.getReference());
+            assertEquals("values.yml", artifact.getName());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void contentsAndBytesAreMutuallyExclusive() {
+        assertThrows(IllegalArgumentException.class, () -> Base64ArtifactDefinition.builder()
+                .contents("hello")
+                .contentBytes(new byte[] {1})
+                .build());
+    }
 }
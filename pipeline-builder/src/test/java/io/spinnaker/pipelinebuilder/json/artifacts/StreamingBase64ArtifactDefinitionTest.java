@@ -0,0 +1,105 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.spinnaker.pipelinebuilder.json.artifacts;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonHelper;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonOutputMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingBase64ArtifactDefinitionTest {
+    private Path file;
+    private byte[] contents;
+
+    @BeforeEach
+    public void createFile() throws IOException {
+        contents = new byte[100_000]; // larger than the generator's buffers, so that it is encoded in several chunks
+        new Random(42).nextBytes(contents);
+        file = Files.createTempFile("artifact", ".bin");
+        Files.write(file, contents);
+    }
+
+    @AfterEach
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void serializedLikeBase64Artifact() throws IOException {
+        StreamingBase64ArtifactDefinition streamed = StreamingBase64ArtifactDefinition.fromPath("id", "payload.bin", file);
+        Base64ArtifactDefinition buffered = Base64ArtifactDefinition.builder()
+                .id("id")
+                .name("payload.bin")
+                .contentBytes(contents)
+                .build();
+
+        for (JsonOutputMode mode : JsonOutputMode.values()) {
+            assertEquals(JsonHelper.toJson(buffered, mode, true), JsonHelper.toJson(streamed, mode, true), mode.name());
+        }
+        StringWriter writer = new StringWriter();
+        JsonHelper.writeJson(writer, streamed, JsonOutputMode.PRETTY, false);
+        assertEquals(JsonHelper.toJson(buffered, JsonOutputMode.PRETTY, false), writer.toString());
+
+        JsonNode tree = JsonHelper.getObjectMapper().valueToTree(streamed);
+        assertTrue(tree.get("reference").isTextual());
+        assertEquals(buffered.getReference(), tree.get("reference").asText());
+        assertEquals(buffered.getReference(), streamed.getReference());
+    }
+
+    @Test
+    public void sourceIsReadAtSerialization() throws IOException {
+        StreamingBase64ArtifactDefinition artifact = StreamingBase64ArtifactDefinition.fromPath("id", "values.yml", file);
+        Files.write(file, "replicaCount: 3\n".getBytes());
+
+        String expected = Base64ArtifactDefinition.builder().contents("replicaCount: 3\n").build().getReference();
+        assertEquals(expected, JsonHelper.getObjectMapper().valueToTree(artifact).get("reference").asText());
+    }
+
+    @Test
+    public void missingSourcesAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> StreamingBase64ArtifactDefinition.fromPath("id", "missing", file.resolveSibling("no-such-file")));
+        assertThrows(IllegalArgumentException.class,
+                () -> StreamingBase64ArtifactDefinition.fromResource("id", "missing", getClass().getClassLoader(), "no/such/resource"));
+    }
+
+    @Test
+    public void fromResource() throws IOException {
+        String resourceName = "io/spinnaker/pipelinebuilder/test/application/minimalApplication.json";
+        StreamingBase64ArtifactDefinition artifact = StreamingBase64ArtifactDefinition.fromResource("id", "application.json",
+                getClass().getClassLoader(), resourceName);
+        byte[] resourceBytes;
+        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(resourceName)) {
+            resourceBytes = inputStream.readAllBytes();
+        }
+
+        assertEquals(Base64ArtifactDefinition.builder().contentBytes(resourceBytes).build().getReference(),
+                JsonHelper.getObjectMapper().valueToTree(artifact).get("reference").asText());
+        assertEquals("embedded-artifact", artifact.getArtifactAccount());
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.spinnaker.pipelinebuilder.test;
+
+import io.spinnaker.pipelinebuilder.json.Pipeline;
+import io.spinnaker.pipelinebuilder.json.Stage;
+import io.spinnaker.pipelinebuilder.pipelines.BulkGenerationReport;
+import io.spinnaker.pipelinebuilder.pipelines.BulkPipelineGenerator;
+import io.spinnaker.pipelinebuilder.pipelines.JsonPipelineBuilder;
+import io.spinnaker.pipelinebuilder.pipelines.PipelineGenerationResult;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the {@link BulkPipelineGenerator}.
+ */
+public class BulkPipelineGeneratorTests {
+
+    @Test
+    public void resultsAreInInputOrder() {
+        List<JsonPipelineBuilder> builders = IntStream.range(0, 50)
+            .mapToObj(i -> getJsonPipelineBuilder("pipeline-" + i, false))
+            .collect(Collectors.toList());
+
+        BulkGenerationReport report = BulkPipelineGenerator.builder()
+            .parallelism(4)
+            .build()
+            .generate(builders);
+
+        Assertions.assertEquals(builders.size(), report.getResults().size());
+        Assertions.assertFalse(report.hasFailures());
+        for (int i = 0; i < builders.size(); i++) {
+            PipelineGenerationResult result = report.getResults().get(i);
+            Assertions.assertSame(builders.get(i), result.getBuilder());
+            Assertions.assertEquals("pipeline-" + i, result.getPipeline().getName());
+            Assertions.assertEquals(result.getPipeline().toJson(), result.getJson());
+        }
+    }
+
+    @Test
+    public void failuresDoNotAbortTheBatch() {
+        List<JsonPipelineBuilder> builders = List.of(
+            getJsonPipelineBuilder("ok-1", false),
+            getJsonPipelineBuilder("broken", true),
+            getJsonPipelineBuilder("ok-2", false));
+
+        BulkGenerationReport report = BulkPipelineGenerator.builder()
+            .build()
+            .generate(builders);
+
+        Assertions.assertTrue(report.hasFailures());
+        Assertions.assertEquals(2, report.getSuccesses().size());
+        Assertions.assertEquals(1, report.getFailures().size());
+
+        PipelineGenerationResult failure = report.getResults().get(1);
+        Assertions.assertFalse(failure.isSuccessful());
+        Assertions.assertNull(failure.getJson());
+        Assertions.assertTrue(failure.getFailure() instanceof IllegalArgumentException);
+        Assertions.assertTrue(report.toSummary().contains("FAILED"));
+    }
+
+    @Test
+    public void errorsDoNotAbortTheBatch() {
+        JsonPipelineBuilder missingClass = new JsonPipelineBuilder() {
+            @Override
+            public String getUniqueName() {
+                return "missing-class";
+            }
+
+            @Override
+            protected Pipeline buildPipeline() {
+                throw new NoClassDefFoundError("io/spinnaker/Missing");
+            }
+        };
+
+        BulkGenerationReport report = BulkPipelineGenerator.builder()
+            .build()
+            .generate(List.of(getJsonPipelineBuilder("ok", false), missingClass));
+
+        Assertions.assertEquals(1, report.getSuccesses().size());
+        PipelineGenerationResult failure = report.getResults().get(1);
+        Assertions.assertFalse(failure.isSuccessful());
+        Assertions.assertTrue(failure.getFailure() instanceof NoClassDefFoundError);
+    }
+
+    @Test
+    public void fatalErrorsAreRethrownUnwrapped() {
+        JsonPipelineBuilder outOfMemory = new JsonPipelineBuilder() {
+            @Override
+            public String getUniqueName() {
+                return "out-of-memory";
+            }
+
+            @Override
+            protected Pipeline buildPipeline() {
+                throw new OutOfMemoryError("Java heap space");
+            }
+        };
+
+        BulkPipelineGenerator generator = BulkPipelineGenerator.builder().build();
+        OutOfMemoryError error = Assertions.assertThrows(OutOfMemoryError.class,
+            () -> generator.generate(List.of(getJsonPipelineBuilder("ok", false), outOfMemory)));
+        Assertions.assertEquals("Java heap space", error.getMessage());
+    }
+
+    @Test
+    public void externalExecutorIsNotShutDown() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            BulkPipelineGenerator generator = BulkPipelineGenerator.builder()
+                .executor(executor)
+                .build();
+            generator.generate(List.of(getJsonPipelineBuilder("first", false)));
+            generator.generate(List.of(getJsonPipelineBuilder("second", false)));
+            Assertions.assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void executorAndParallelismAreMutuallyExclusive() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> BulkPipelineGenerator.builder()
+                .executor(executor)
+                .parallelism(2)
+                .build());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private JsonPipelineBuilder getJsonPipelineBuilder(final String uniqueName, final boolean broken) {
+        return new JsonPipelineBuilder() {
+            @Override
+            public String getUniqueName() {
+                return uniqueName;
+            }
+
+            @Override
+            protected Pipeline buildPipeline() {
+                Stage wait = Stage.builder()
+                    .name("wait")
+                    .type("wait")
+                    .parentStageId(broken ? "missing" : null)
+                    .build();
+                return Pipeline.builder()
+                    .name(uniqueName)
+                    .stage(wait)
+                    .build();
+            }
+        };
+    }
+}
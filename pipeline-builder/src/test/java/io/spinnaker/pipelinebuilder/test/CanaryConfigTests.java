@@ -0,0 +1,64 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.spinnaker.pipelinebuilder.test;
+
+import io.spinnaker.pipelinebuilder.json.canary.CanaryConfig;
+import io.spinnaker.pipelinebuilder.json.canary.CanaryFailOn;
+import io.spinnaker.pipelinebuilder.json.canary.CanaryMetric;
+import io.spinnaker.pipelinebuilder.json.canary.CanaryNanStrategy;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonOutputMode;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the serialization of {@link CanaryConfig}.
+ */
+public class CanaryConfigTests {
+
+    @Test
+    public void canaryConfigOutputModes() throws JsonProcessingException {
+        CanaryConfig config = CanaryConfig.builder()
+            .application("app")
+            .name("latency")
+            .description("fails if latency increases")
+            .metrics(List.of(CanaryMetric.builder()
+                .name("p99")
+                .scopeName("default")
+                .groups(List.of("latency"))
+                .failOn(CanaryFailOn.INCREASE)
+                .nanStrategy(CanaryNanStrategy.REPLACE_WITH_ZERO)
+                .build()))
+            .build();
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        JsonNode pretty = objectMapper.readTree(config.toJson());
+        Assertions.assertEquals("latency", pretty.get("name").asText());
+        Assertions.assertEquals("increase", pretty.at("/metrics/0/analysisConfigurations/canary/direction").asText());
+
+        String compact = config.toJson(JsonOutputMode.COMPACT);
+        Assertions.assertFalse(compact.contains("\n"));
+        Assertions.assertEquals(pretty, objectMapper.readTree(compact));
+
+        String canonical = config.toJson(JsonOutputMode.CANONICAL);
+        Assertions.assertTrue(canonical.startsWith("{\"applications\":[\"app\"],\"configVersion\":\"1\","), canonical);
+        Assertions.assertEquals(pretty, objectMapper.readTree(canonical));
+    }
+}
@@ -17,6 +17,7 @@
 package io.spinnaker.pipelinebuilder.test;
 
 import io.spinnaker.pipelinebuilder.json.expressions.ConditionalExpression;
+import io.spinnaker.pipelinebuilder.json.helpers.SpelHelper;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -59,5 +60,29 @@ public class ConditionalExpressionTests {
             }
         }
     }
-}
 
+    @Test
+    public void validationResultsAreCached() {
+        final String expression = "${ trigger.parameters.cachedValidation == 'yes' }";
+        ConditionalExpression.builder().expression(expression).build();
+        final long hits = SpelHelper.getValidationCacheHitCount();
+        final long misses = SpelHelper.getValidationCacheMissCount();
+
+        ConditionalExpression.builder().expression(expression).build();
+        Assertions.assertEquals(hits + 1, SpelHelper.getValidationCacheHitCount());
+        Assertions.assertEquals(misses, SpelHelper.getValidationCacheMissCount());
+    }
+
+    @Test
+    public void cachedFailuresThrowNewExceptions() {
+        final String expression = "${ foo.status qux 'cached' }";
+        final SpelParseException first = Assertions.assertThrows(SpelParseException.class,
+            () -> ConditionalExpression.builder().expression(expression).build());
+        final SpelParseException second = Assertions.assertThrows(SpelParseException.class,
+            () -> ConditionalExpression.builder().expression(expression).build());
+
+        Assertions.assertNotSame(first, second);
+        Assertions.assertEquals(first.getMessage(), second.getMessage());
+        Assertions.assertEquals(first.getPosition(), second.getPosition());
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.spinnaker.pipelinebuilder.test;
+
+import io.spinnaker.pipelinebuilder.json.Pipeline;
+import io.spinnaker.pipelinebuilder.json.Stage;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonOutputMode;
+import io.spinnaker.pipelinebuilder.pipelines.ContentAddressedPipelineStore;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the {@link ContentAddressedPipelineStore}.
+ */
+public class ContentAddressedPipelineStoreTests {
+    private Path directory;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("pipeline-store");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void unchangedPipelinesAreNotWrittenAgain() throws IOException {
+        Pipeline pipeline = getPipeline("id-1", "first");
+        String hash;
+        try (ContentAddressedPipelineStore store = ContentAddressedPipelineStore.open(directory)) {
+            hash = store.put(pipeline);
+            Assertions.assertEquals(1, store.getWrittenCount());
+            Assertions.assertEquals(pipeline.toJson(JsonOutputMode.CANONICAL), store.read("id-1"));
+        }
+        Path indexFile = directory.resolve("index.json");
+        FileTime indexModified = Files.getLastModifiedTime(indexFile);
+        FileTime objectModified = Files.getLastModifiedTime(directory.resolve("objects").resolve(hash.substring(0, 2)).resolve(hash + ".json"));
+
+        try (ContentAddressedPipelineStore store = ContentAddressedPipelineStore.open(directory)) {
+            Assertions.assertEquals(hash, store.getHash("id-1"));
+            Assertions.assertEquals(hash, store.put(getPipeline("id-1", "first")));
+            Assertions.assertEquals(0, store.getWrittenCount());
+            Assertions.assertEquals(1, store.getUnchangedCount());
+        }
+        Assertions.assertEquals(indexModified, Files.getLastModifiedTime(indexFile));
+        Assertions.assertEquals(objectModified, Files.getLastModifiedTime(directory.resolve("objects").resolve(hash.substring(0, 2)).resolve(hash + ".json")));
+    }
+
+    @Test
+    public void revertedPipelinesReuseTheirObject() throws IOException {
+        try (ContentAddressedPipelineStore store = ContentAddressedPipelineStore.open(directory)) {
+            String first = store.put(getPipeline("id-1", "first version"));
+            store.put(getPipeline("id-1", "second version"));
+            Assertions.assertEquals(first, store.put(getPipeline("id-1", "first version")));
+            Assertions.assertEquals(first, store.getHash("id-1"));
+            Assertions.assertEquals(2, store.getWrittenCount());
+            Assertions.assertEquals(1, store.getUnchangedCount());
+        }
+    }
+
+    @Test
+    public void previousVersionsCanBeRemoved() throws IOException {
+        try (ContentAddressedPipelineStore store = ContentAddressedPipelineStore.open(directory)) {
+            String oldHash = store.put(getPipeline("id-1", "old name"));
+            store.put(getPipeline("id-2", "other"));
+            String newHash = store.put(getPipeline("id-1", "new name"));
+            Assertions.assertNotEquals(oldHash, newHash);
+            Assertions.assertEquals(newHash, store.getHash("id-1"));
+
+            store.retainAll(Set.of("id-1"));
+            Assertions.assertEquals(2, store.removeUnreferencedObjects());
+            Assertions.assertTrue(Files.exists(store.getObjectFile(newHash)));
+            Assertions.assertFalse(Files.exists(store.getObjectFile(oldHash)));
+            Assertions.assertNull(store.read("id-2"));
+        }
+    }
+
+    private static Pipeline getPipeline(final String id, final String name) {
+        Pipeline pipeline = Pipeline.builder()
+            .name(name)
+            .stage(Stage.builder().id("1").name("wait").type("wait").build())
+            .build();
+        pipeline.setId(id);
+        return pipeline;
+    }
+}
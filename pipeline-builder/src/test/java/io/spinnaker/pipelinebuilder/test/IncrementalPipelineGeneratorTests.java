@@ -0,0 +1,219 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.spinnaker.pipelinebuilder.test;
+
+import io.spinnaker.pipelinebuilder.json.Pipeline;
+import io.spinnaker.pipelinebuilder.json.Stage;
+import io.spinnaker.pipelinebuilder.pipelines.IncrementalGenerationReport;
+import io.spinnaker.pipelinebuilder.pipelines.IncrementalPipelineGenerator;
+import io.spinnaker.pipelinebuilder.pipelines.JsonPipelineBuilder;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the {@link IncrementalPipelineGenerator}.
+ */
+public class IncrementalPipelineGeneratorTests {
+    private static final AtomicInteger buildCount = new AtomicInteger();
+
+    private Path directory;
+    private Path outputDirectory;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("incremental-generation");
+        outputDirectory = directory.resolve("pipelines");
+        Files.write(directory.resolve("description.txt"), "first version".getBytes(StandardCharsets.UTF_8));
+        buildCount.set(0);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void unchangedBuildersAreReused() throws IOException {
+        IncrementalGenerationReport first = generate(new FirstBuilder(), new SecondBuilder());
+        Assertions.assertEquals(0, first.getReused().size());
+        Assertions.assertEquals(2, first.getRebuilt().getSuccesses().size());
+        Assertions.assertEquals(2, buildCount.get());
+
+        FirstBuilder builder = new FirstBuilder();
+        IncrementalGenerationReport second = generate(builder, new SecondBuilder());
+        Assertions.assertEquals(2, second.getReused().size());
+        Assertions.assertEquals(0, second.getRebuilt().getResults().size());
+        Assertions.assertEquals(2, buildCount.get());
+        Assertions.assertTrue(second.toSummary().contains("REUSED"));
+
+        Path outputFile = newGenerator().getOutputFile(builder.build().getId());
+        Assertions.assertEquals(builder.build().toJson(), new String(Files.readAllBytes(outputFile), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void changedSaltIsRebuilt() throws IOException {
+        generate(new FirstBuilder(), new SecondBuilder());
+
+        IncrementalGenerationReport report = generate(new FirstBuilder().setSalt("salt"), new SecondBuilder());
+        Assertions.assertEquals(1, report.getReused().size());
+        Assertions.assertEquals(1, report.getRebuilt().getResults().size());
+        Assertions.assertTrue(report.getRebuilt().getResults().get(0).getBuilder() instanceof FirstBuilder);
+    }
+
+    @Test
+    public void changedDeterministicIdsIsRebuilt() throws IOException {
+        generate(new FirstBuilder(), new SecondBuilder());
+
+        IncrementalGenerationReport report = generate(new FirstBuilder().setDeterministicIds(true), new SecondBuilder());
+        Assertions.assertEquals(1, report.getReused().size());
+        Assertions.assertEquals(1, report.getRebuilt().getResults().size());
+        Assertions.assertTrue(report.getRebuilt().getResults().get(0).getBuilder() instanceof FirstBuilder);
+    }
+
+    @Test
+    public void changedResourceIsRebuilt() throws IOException {
+        generate(new FirstBuilder(), new SecondBuilder());
+        Files.write(directory.resolve("description.txt"), "second version".getBytes(StandardCharsets.UTF_8));
+
+        IncrementalGenerationReport report = generate(new FirstBuilder(), new SecondBuilder());
+        Assertions.assertEquals(1, report.getReused().size());
+        Assertions.assertTrue(report.getReused().get(0) instanceof FirstBuilder);
+        Assertions.assertEquals(1, report.getRebuilt().getResults().size());
+        Assertions.assertEquals("second version", report.getRebuilt().getResults().get(0).getPipeline().getDescription());
+    }
+
+    @Test
+    public void resourcesOfEarlierBuildsAreForgotten() throws IOException {
+        SecondBuilder builder = new SecondBuilder();
+        builder.build();
+        builder.readResource = false;
+        generate(builder);
+        Files.write(directory.resolve("description.txt"), "second version".getBytes(StandardCharsets.UTF_8));
+
+        IncrementalGenerationReport report = generate(builder);
+        Assertions.assertEquals(1, report.getReused().size());
+    }
+
+    @Test
+    public void resourcesReadByConstructorsAreTracked() throws IOException {
+        generate(new ConstructorResourceBuilder());
+        Files.write(directory.resolve("description.txt"), "second version".getBytes(StandardCharsets.UTF_8));
+
+        IncrementalGenerationReport report = generate(new ConstructorResourceBuilder());
+        Assertions.assertEquals(0, report.getReused().size());
+        Assertions.assertEquals("second version", report.getRebuilt().getResults().get(0).getPipeline().getDescription());
+    }
+
+    @Test
+    public void modifiedOutputIsRebuilt() throws IOException {
+        FirstBuilder builder = new FirstBuilder();
+        generate(builder);
+        Path outputFile = newGenerator().getOutputFile(builder.build().getId());
+        Files.write(outputFile, "{}".getBytes(StandardCharsets.UTF_8));
+
+        IncrementalGenerationReport report = generate(new FirstBuilder());
+        Assertions.assertEquals(0, report.getReused().size());
+        Assertions.assertEquals(builder.build().toJson(), new String(Files.readAllBytes(outputFile), StandardCharsets.UTF_8));
+    }
+
+    private IncrementalGenerationReport generate(final JsonPipelineBuilder... builders) throws IOException {
+        return newGenerator().generate(List.of(builders));
+    }
+
+    private IncrementalPipelineGenerator newGenerator() {
+        return IncrementalPipelineGenerator.builder()
+            .outputDirectory(outputDirectory)
+            .build();
+    }
+
+    private static Pipeline countedPipeline(final String name, final String description) {
+        buildCount.incrementAndGet();
+        return Pipeline.builder()
+            .name(name)
+            .description(description)
+            .stage(Stage.builder().name("wait").type("wait").build())
+            .build();
+    }
+
+    private static class FirstBuilder extends JsonPipelineBuilder {
+        @Override
+        public String getUniqueName() {
+            return "first";
+        }
+
+        @Override
+        protected Pipeline buildPipeline() {
+            return countedPipeline("first", null);
+        }
+    }
+
+    private class SecondBuilder extends JsonPipelineBuilder {
+        private boolean readResource = true;
+
+        @Override
+        public String getUniqueName() {
+            return "second";
+        }
+
+        @Override
+        protected Pipeline buildPipeline() {
+            if (!readResource) {
+                return countedPipeline("second", null);
+            }
+            try (URLClassLoader classLoader = new URLClassLoader(new URL[]{directory.toUri().toURL()}, null)) {
+                return countedPipeline("second", getResourceContents(classLoader, "description.txt"));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private class ConstructorResourceBuilder extends JsonPipelineBuilder {
+        private final String description;
+
+        ConstructorResourceBuilder() {
+            try (URLClassLoader classLoader = new URLClassLoader(new URL[]{directory.toUri().toURL()}, null)) {
+                description = getResourceContents(classLoader, "description.txt");
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public String getUniqueName() {
+            return "constructor";
+        }
+
+        @Override
+        protected Pipeline buildPipeline() {
+            return countedPipeline("constructor", description);
+        }
+    }
+}
@@ -16,12 +16,26 @@
 
 package io.spinnaker.pipelinebuilder.test;
 
+import io.spinnaker.pipelinebuilder.json.DeterministicIdScope;
 import io.spinnaker.pipelinebuilder.json.Pipeline;
 import io.spinnaker.pipelinebuilder.json.Stage;
+import io.spinnaker.pipelinebuilder.json.StageIdScope;
+import io.spinnaker.pipelinebuilder.json.artifacts.Base64ArtifactDefinition;
+import io.spinnaker.pipelinebuilder.json.artifacts.ExpectedArtifact;
+import io.spinnaker.pipelinebuilder.json.triggers.CronTrigger;
+import io.spinnaker.pipelinebuilder.json.triggers.Trigger;
+import io.spinnaker.pipelinebuilder.pipelines.AnnotatedPipelineBuilder;
+import io.spinnaker.pipelinebuilder.pipelines.BulkGenerationReport;
+import io.spinnaker.pipelinebuilder.pipelines.BulkPipelineGenerator;
 import io.spinnaker.pipelinebuilder.pipelines.JsonPipelineBuilder;
+import io.spinnaker.pipelinebuilder.pipelines.PipelineIdRegistry;
+import io.spinnaker.pipelinebuilder.pipelines.PipelineUniqueName;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import org.apache.commons.lang.RandomStringUtils;
@@ -150,6 +164,106 @@ public class JsonPipelineBuilderTests {
         builder.build();
     }
 
+    @PipelineUniqueName("annotated-unique-name")
+    public static class AnnotatedBuilder extends AnnotatedPipelineBuilder {
+        static final AtomicInteger instances = new AtomicInteger();
+
+        public AnnotatedBuilder() {
+            instances.incrementAndGet();
+        }
+
+        @Override
+        protected Pipeline buildPipeline() {
+            return Pipeline.builder()
+                .name("test pipeline")
+                .build();
+        }
+    }
+
+    public static class CountedBuilder extends CustomBuilder {
+        static final AtomicInteger instances = new AtomicInteger();
+
+        public CountedBuilder() {
+            instances.incrementAndGet();
+        }
+
+        @Override
+        public String getUniqueName() {
+            return "counted-unique-name";
+        }
+    }
+
+    @PipelineUniqueName("declared-unique-name")
+    public static class MismatchedBuilder extends CustomBuilder {
+    }
+
+    public static class ApplicationNamedBuilder extends CustomBuilder {
+        @Override
+        public String getUniqueName() {
+            return getApplication() + "-pipeline";
+        }
+    }
+
+    @Test
+    public void annotatedBuildersAreNotInstantiated() {
+        int instances = AnnotatedBuilder.instances.get();
+        String id = PipelineIdRegistry.getPipelineId(AnnotatedBuilder.class, "salt", "app");
+        Assertions.assertEquals(instances, AnnotatedBuilder.instances.get());
+
+        AnnotatedBuilder builder = new AnnotatedBuilder();
+        builder.setSalt("salt");
+        Assertions.assertEquals("annotated-unique-name", builder.getUniqueName());
+        Assertions.assertEquals(id, builder.build().getId());
+    }
+
+    @Test
+    public void buildersAreInstantiatedOncePerSaltAndApplication() {
+        int instances = CountedBuilder.instances.get();
+        Set<String> ids = IntStream.range(0, 1000).parallel()
+            .mapToObj(i -> PipelineIdRegistry.getPipelineId(CountedBuilder.class, "salt-" + (i % 2), "app"))
+            .collect(Collectors.toSet());
+        Assertions.assertEquals(instances + 2, CountedBuilder.instances.get());
+
+        CountedBuilder builder = new CountedBuilder();
+        builder.setSalt("salt-1");
+        Assertions.assertEquals(2, ids.size());
+        Assertions.assertTrue(ids.contains(builder.build().getId()));
+    }
+
+    @Test
+    public void nullSaltIsAccepted() {
+        AnnotatedBuilder builder = new AnnotatedBuilder();
+        builder.setSalt(null);
+        Assertions.assertEquals(builder.build().getId(), PipelineIdRegistry.getPipelineId(AnnotatedBuilder.class, null, null));
+    }
+
+    @Test
+    public void uniqueNamesCanDependOnTheApplication() {
+        JsonPipelineBuilder builder = new ApplicationNamedBuilder().setApplication("first-app");
+        String firstId = PipelineIdRegistry.getPipelineId(ApplicationNamedBuilder.class, "", "first-app");
+        Assertions.assertEquals(builder.build().getId(), firstId);
+
+        builder.setApplication("second-app");
+        String secondId = PipelineIdRegistry.getPipelineId(ApplicationNamedBuilder.class, "", "second-app");
+        Assertions.assertEquals(builder.build().getId(), secondId);
+        Assertions.assertNotEquals(firstId, secondId);
+    }
+
+    @Test
+    public void uniqueNameMustMatchAnnotation() {
+        Assertions.assertThrows(IllegalStateException.class, () -> new MismatchedBuilder().build());
+
+        IllegalStateException exception = Assertions.assertThrows(IllegalStateException.class, () -> new AnnotatedPipelineBuilder() {
+            @Override
+            protected Pipeline buildPipeline() {
+                return Pipeline.builder()
+                    .name("test pipeline")
+                    .build();
+            }
+        });
+        Assertions.assertTrue(exception.getMessage().contains("@PipelineUniqueName"), exception.getMessage());
+    }
+
     @Test
     public void alphabeticalKeysInJson() throws JsonProcessingException {
         // generate 100 random KV pairs for the stage context
@@ -182,4 +296,133 @@ public class JsonPipelineBuilderTests {
             lastOffset = currentOffset;
         }
     }
+
+    @Test
+    public void stageIdsRestartForEachBuild() {
+        JsonPipelineBuilder builder = getJsonPipelineBuilderWithStages(UNIQUE_NAME, 3);
+        Pipeline first = builder.build();
+        Stage.builder().name("created outside of a build").type("wait").build(); // uses the global counter
+        Pipeline second = builder.build();
+
+        List<String> expectedIds = List.of("1", "2", "3");
+        Assertions.assertEquals(expectedIds, first.getStages().stream().map(Stage::getId).collect(Collectors.toList()));
+        Assertions.assertEquals(expectedIds, second.getStages().stream().map(Stage::getId).collect(Collectors.toList()));
+        Assertions.assertEquals(first.toJson(), second.toJson());
+    }
+
+    @Test
+    public void stageIdsDoNotDependOnConcurrentBuilds() {
+        String expected = getJsonPipelineBuilderWithStages(UNIQUE_NAME, 20).build().toJson();
+
+        List<JsonPipelineBuilder> builders = IntStream.range(0, 100)
+            .mapToObj(i -> getJsonPipelineBuilderWithStages(UNIQUE_NAME, 20))
+            .collect(Collectors.toList());
+        BulkGenerationReport report = BulkPipelineGenerator.builder()
+            .parallelism(8)
+            .build()
+            .generate(builders);
+
+        report.getResults().forEach(result -> Assertions.assertEquals(expected, result.getJson()));
+    }
+
+    @Test
+    public void nestedStageIdScopes() {
+        try (StageIdScope outer = StageIdScope.open()) {
+            Assertions.assertEquals("1", Stage.nextStageId());
+            try (StageIdScope inner = StageIdScope.open()) {
+                Assertions.assertEquals("1", Stage.nextStageId());
+                Assertions.assertEquals("2", Stage.nextStageId());
+            }
+            Assertions.assertEquals("2", Stage.nextStageId());
+        }
+    }
+
+    @Test
+    public void deterministicIdsAreStable() {
+        Pipeline first = getJsonPipelineBuilderWithTriggers(UNIQUE_NAME).setDeterministicIds(true).build();
+        Pipeline second = getJsonPipelineBuilderWithTriggers(UNIQUE_NAME).setDeterministicIds(true).build();
+        Pipeline other = getJsonPipelineBuilderWithTriggers("name-2").setDeterministicIds(true).build();
+
+        Assertions.assertEquals(first.toJson(), second.toJson());
+        Assertions.assertNotEquals(first.getTriggers().get(0).getId(), first.getTriggers().get(1).getId());
+        Assertions.assertNotEquals(first.getTriggers().get(0).getId(), other.getTriggers().get(0).getId());
+        Assertions.assertNotEquals(first.getExpectedArtifacts().get(0).getId(), other.getExpectedArtifacts().get(0).getId());
+        Assertions.assertEquals("explicit-id", first.getTriggers().get(2).getId());
+    }
+
+    @Test
+    public void randomIdsByDefault() {
+        Pipeline first = getJsonPipelineBuilderWithTriggers(UNIQUE_NAME).build();
+        Pipeline second = getJsonPipelineBuilderWithTriggers(UNIQUE_NAME).build();
+
+        Assertions.assertNotEquals(first.getTriggers().get(0).getId(), second.getTriggers().get(0).getId());
+        Assertions.assertNotEquals(first.getExpectedArtifacts().get(0).getId(), second.getExpectedArtifacts().get(0).getId());
+    }
+
+    @Test
+    public void nestedDeterministicIdScopes() {
+        String outerFirst;
+        try (DeterministicIdScope outer = DeterministicIdScope.open("outer")) {
+            outerFirst = DeterministicIdScope.nextId("trigger");
+            try (DeterministicIdScope inner = DeterministicIdScope.open("inner")) {
+                Assertions.assertNotEquals(outerFirst, DeterministicIdScope.nextId("trigger"));
+                Assertions.assertThrows(IllegalStateException.class, outer::close);
+            }
+            Assertions.assertNotEquals(outerFirst, DeterministicIdScope.nextId("trigger"));
+        }
+        try (DeterministicIdScope outer = DeterministicIdScope.open("outer")) {
+            Assertions.assertEquals(outerFirst, DeterministicIdScope.nextId("trigger"));
+        }
+    }
+
+    private JsonPipelineBuilder getJsonPipelineBuilderWithTriggers(final String uniqueName) {
+        return new JsonPipelineBuilder() {
+            @Override
+            public String getUniqueName() {
+                return uniqueName;
+            }
+
+            @Override
+            protected Pipeline buildPipeline() {
+                List<Trigger> triggers = List.of(
+                    CronTrigger.builder().cronExpression("0 0 * * * ?").build(),
+                    CronTrigger.builder().cronExpression("0 30 * * * ?").build(),
+                    CronTrigger.builder().id("explicit-id").cronExpression("0 45 * * * ?").build());
+                ExpectedArtifact expectedArtifact = ExpectedArtifact.builder()
+                    .displayName("values")
+                    .matchArtifact(Base64ArtifactDefinition.builder().name("values.yml").contents("key: value").build())
+                    .build();
+                return Pipeline.builder()
+                    .name("test pipeline")
+                    .triggers(triggers)
+                    .expectedArtifact(expectedArtifact)
+                    .build();
+            }
+        };
+    }
+
+    private JsonPipelineBuilder getJsonPipelineBuilderWithStages(final String uniqueName, final int stageCount) {
+        return new JsonPipelineBuilder() {
+            @Override
+            public String getUniqueName() {
+                return uniqueName;
+            }
+
+            @Override
+            protected Pipeline buildPipeline() {
+                List<Stage> stages = new ArrayList<>();
+                for (int i = 0; i < stageCount; i++) {
+                    stages.add(Stage.builder()
+                        .name("stage " + i)
+                        .type("wait")
+                        .parentStage(stages.isEmpty() ? null : stages.get(stages.size() - 1))
+                        .build());
+                }
+                return Pipeline.builder()
+                    .name("test pipeline")
+                    .stages(stages)
+                    .build();
+            }
+        };
+    }
 }
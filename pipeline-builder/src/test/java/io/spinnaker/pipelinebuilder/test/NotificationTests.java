@@ -16,11 +16,18 @@
 
 package io.spinnaker.pipelinebuilder.test;
 
+import io.spinnaker.pipelinebuilder.json.Pipeline;
+import io.spinnaker.pipelinebuilder.json.Stage;
 import io.spinnaker.pipelinebuilder.json.notifications.Notification;
 import io.spinnaker.pipelinebuilder.json.notifications.NotificationEvent;
 import io.spinnaker.pipelinebuilder.json.notifications.SlackNotification;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -29,6 +36,15 @@ import org.junit.jupiter.api.Test;
  */
 public class NotificationTests {
 
+    private static final Notification PIPELINE_NOTIFICATION = SlackNotification.builder()
+        .channel("#spinnaker-ci")
+        .message(Map.of(NotificationEvent.PIPELINE_FAILED, "failed"))
+        .build();
+    private static final Notification STAGE_NOTIFICATION = SlackNotification.builder()
+        .channel("#spinnaker-ci")
+        .message(Map.of(NotificationEvent.MANUAL_JUDGMENT, "waiting"))
+        .build();
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Test
@@ -60,4 +76,44 @@ public class NotificationTests {
             Assertions.assertNotEquals(event.toJson(), event.name());
         }
     }
+
+    @Test
+    public void sharedNotificationsGetTheLevelOfTheirOwner() throws Exception {
+        Pipeline first = getPipelineWithNotifications("first");
+        Pipeline second = getPipelineWithNotifications("second");
+
+        for (Pipeline pipeline : List.of(first, second)) {
+            JsonNode json = objectMapper.readTree(pipeline.toJson());
+            Assertions.assertEquals("pipeline", json.at("/notifications/0/level").asText());
+            Assertions.assertEquals("stage", json.at("/stages/0/notifications/0/level").asText());
+        }
+        Assertions.assertSame(first.getNotifications().get(0), second.getNotifications().get(0));
+        Assertions.assertFalse(objectMapper.convertValue(PIPELINE_NOTIFICATION, Map.class).containsKey("level")); // only written by an owner
+    }
+
+    @Test
+    public void sharedNotificationsCanBeSerializedConcurrently() {
+        List<Pipeline> pipelines = IntStream.range(0, 200)
+            .mapToObj(i -> getPipelineWithNotifications("pipeline"))
+            .collect(Collectors.toList());
+
+        Set<String> json = pipelines.parallelStream()
+            .map(Pipeline::toJson)
+            .collect(Collectors.toSet());
+
+        Assertions.assertEquals(1, json.size());
+    }
+
+    private Pipeline getPipelineWithNotifications(final String name) {
+        return Pipeline.builder()
+            .name(name)
+            .notification(PIPELINE_NOTIFICATION)
+            .stage(Stage.builder()
+                .id("1")
+                .name("Manual judgment")
+                .type("manualJudgment")
+                .notification(STAGE_NOTIFICATION)
+                .build())
+            .build();
+    }
 }
@@ -17,11 +17,30 @@
 package io.spinnaker.pipelinebuilder.test;
 
 import io.spinnaker.pipelinebuilder.json.Pipeline;
+import io.spinnaker.pipelinebuilder.json.PipelineParameter;
 import io.spinnaker.pipelinebuilder.json.Stage;
+import io.spinnaker.pipelinebuilder.json.artifacts.Base64ArtifactDefinition;
+import io.spinnaker.pipelinebuilder.json.artifacts.ExpectedArtifact;
+import io.spinnaker.pipelinebuilder.json.canary.CanaryHelper;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonHelper;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonOutputMode;
 import io.spinnaker.pipelinebuilder.json.notifications.EmailNotification;
+import io.spinnaker.pipelinebuilder.json.notifications.Notification;
 import io.spinnaker.pipelinebuilder.json.notifications.NotificationEvent;
+import io.spinnaker.pipelinebuilder.json.notifications.NotificationLevel;
+import io.spinnaker.pipelinebuilder.json.notifications.NotificationList;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Assertions;
@@ -127,6 +146,22 @@ public class PipelineBuilderTests {
             .stages(List.of(s1, s2))
             .build());
         Assertions.assertTrue(exception.getMessage().contains("Circular dependency"));
+        Assertions.assertTrue(exception.getMessage().endsWith("id-1 -> id-2 -> id-1"), exception.getMessage());
+    }
+
+    @Test
+    public void circularDependencyReportsTheCycle() {
+        Stage root = Stage.builder().id("root").name("root").type("wait").build();
+        Stage a = Stage.builder().id("a").name("a").type("wait").parentStageIds(List.of("root", "c")).build();
+        Stage b = Stage.builder().id("b").name("b").type("wait").parentStage(a).build();
+        Stage c = Stage.builder().id("c").name("c").type("wait").parentStage(b).build();
+        Stage unrelated = Stage.builder().id("unrelated").name("unrelated").type("wait").parentStage(root).build();
+
+        IllegalArgumentException exception = Assertions.assertThrows(IllegalArgumentException.class, () -> Pipeline.builder()
+            .name("pipeline with a cycle below its first stage")
+            .stages(List.of(root, a, b, c, unrelated))
+            .build());
+        Assertions.assertTrue(exception.getMessage().endsWith(": a -> b -> c -> a"), exception.getMessage());
     }
 
     @Test
@@ -185,4 +220,192 @@ public class PipelineBuilderTests {
         Assertions.assertEquals("bar", fooValue);
         Assertions.assertEquals("world", helloValue);
     }
+
+    @Test
+    public void sharedWriterMatchesFreshObjectMapper() throws JsonProcessingException {
+        Stage wait = Stage.builder()
+            .name("wait")
+            .type("wait")
+            .context(Map.of("waitTime", 30, "skipWaitText", "skipped"))
+            .build();
+        Pipeline pipeline = Pipeline.builder()
+            .name("test")
+            .stage(wait)
+            .tags(Map.of("foo", "bar"))
+            .build();
+
+        ObjectMapper freshMapper = new ObjectMapper();
+        String expected = freshMapper.setConfig(freshMapper.getSerializationConfig()
+                .with(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+                .with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS))
+            .writerWithDefaultPrettyPrinter()
+            .writeValueAsString(pipeline);
+
+        Assertions.assertEquals(expected, pipeline.toJson());
+        Assertions.assertEquals(expected, pipeline.toJson()); // second call goes through the cached serializers
+    }
+
+    @Test
+    public void writeJsonMatchesToJson() throws IOException {
+        Pipeline pipeline = Pipeline.builder()
+            .name("streamed")
+            .description("written without an intermediate String")
+            .stage(Stage.builder()
+                .name("wait")
+                .type("wait")
+                .context(Map.of("waitTime", 30))
+                .build())
+            .build();
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        pipeline.writeJson(outputStream);
+        Assertions.assertEquals(pipeline.toJson(), outputStream.toString(StandardCharsets.UTF_8));
+
+        StringWriter writer = new StringWriter();
+        pipeline.writeJson(writer);
+        writer.write("\n"); // the writer was not closed
+        Assertions.assertEquals(pipeline.toJson() + "\n", writer.toString());
+    }
+
+    @Test
+    public void outputModes() throws IOException {
+        Pipeline pipeline = Pipeline.builder()
+            .name("modes")
+            .stage(Stage.builder()
+                .id("1")
+                .name("wait")
+                .type("wait")
+                .context(Map.of("waitTime", 30.0, "ratio", new BigDecimal("0.50")))
+                .build())
+            .build();
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        String compact = pipeline.toJson(JsonOutputMode.COMPACT);
+        Assertions.assertFalse(compact.contains("\n"));
+        Assertions.assertEquals(objectMapper.readTree(pipeline.toJson()), objectMapper.readTree(compact));
+        Assertions.assertEquals(pipeline.toJson(), pipeline.toJson(JsonOutputMode.PRETTY));
+
+        String canonical = pipeline.toJson(JsonOutputMode.CANONICAL);
+        Assertions.assertTrue(canonical.contains("\"context\":{\"ratio\":0.5,\"waitTime\":30}"), canonical);
+        Assertions.assertTrue(canonical.startsWith("{\"keepWaitingPipelines\":false,\"limitConcurrent\":true,\"name\":\"modes\""), canonical);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        pipeline.writeJson(outputStream, JsonOutputMode.CANONICAL);
+        Assertions.assertEquals(canonical, outputStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void frozenPipelineSerializesIdentically() {
+        Pipeline pipeline = Pipeline.builder()
+            .name("frozen")
+            .parameter(PipelineParameter.builder().name("env").options(List.of("staging", "production")).build())
+            .notification(EmailNotification.builder()
+                .address("team@example.com")
+                .message(Map.of(NotificationEvent.PIPELINE_FAILED, "failed", NotificationEvent.PIPELINE_COMPLETE, ""))
+                .build())
+            .expectedArtifact(ExpectedArtifact.builder()
+                .id("values")
+                .displayName("values")
+                .matchArtifact(Base64ArtifactDefinition.builder().id("values").name("values.yml").contents("key: value").build())
+                .build())
+            .stage(Stage.builder()
+                .id("1")
+                .name("Manual judgment")
+                .type("manualJudgment")
+                .notification(EmailNotification.builder()
+                    .address("team@example.com")
+                    .message(Map.of(NotificationEvent.MANUAL_JUDGMENT, "waiting"))
+                    .build())
+                .build())
+            .build();
+        String json = pipeline.toJson();
+        String canonical = pipeline.toJson(JsonOutputMode.CANONICAL);
+
+        Assertions.assertSame(pipeline, pipeline.freeze());
+
+        Assertions.assertEquals(json, pipeline.toJson());
+        Assertions.assertEquals(canonical, pipeline.toJson(JsonOutputMode.CANONICAL));
+    }
+
+    @Test
+    public void sealedPipelineIsImmutable() throws IOException {
+        List<String> parentIds = new ArrayList<>();
+        List<Stage> stages = new ArrayList<>();
+        stages.add(Stage.builder().id("1").name("wait").type("wait").parentStageIds(parentIds).build());
+        Pipeline pipeline = Pipeline.builder()
+            .name("sealed")
+            .stages(stages)
+            .build();
+        pipeline.setId("2f5c1e8a-4b55-4b1e-9c1c-7a3c0d1e2f3a");
+        String json = pipeline.toJson();
+
+        Assertions.assertFalse(pipeline.isSealed());
+        Assertions.assertSame(pipeline, pipeline.seal());
+        Assertions.assertTrue(pipeline.isSealed());
+
+        stages.add(Stage.builder().id("2").name("wait again").type("wait").build());
+        parentIds.add("0");
+        Assertions.assertEquals(1, pipeline.getStages().size());
+        Assertions.assertEquals(List.of(), pipeline.getStages().get(0).getParentIds());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> pipeline.getStages().clear());
+        Assertions.assertThrows(IllegalStateException.class, () -> pipeline.setId("other"));
+        Assertions.assertThrows(IllegalStateException.class, () -> pipeline.setApplication("other"));
+
+        Assertions.assertEquals(json, pipeline.toJson());
+        Assertions.assertEquals(pipeline.toJson(JsonOutputMode.COMPACT), pipeline.toJson(JsonOutputMode.COMPACT));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        pipeline.writeJson(bytes);
+        Assertions.assertEquals(json, bytes.toString(StandardCharsets.UTF_8));
+        StringWriter writer = new StringWriter();
+        pipeline.writeJson(writer, JsonOutputMode.CANONICAL);
+        Assertions.assertEquals(pipeline.toJson(JsonOutputMode.CANONICAL), writer.toString());
+    }
+
+    @Test
+    public void sharedFragmentsSerializeIdentically() {
+        List<Notification> notifications = List.of(EmailNotification.builder()
+            .address("team@example.com")
+            .message(Map.of(NotificationEvent.PIPELINE_FAILED, "failed"))
+            .build());
+        List<Stage> canaryStages = CanaryHelper.buildStagesToLookupCanaryId("app", "canary-config", "default-id", "configId");
+        String json = buildPipelineWithFragments(canaryStages, notifications).toJson();
+        String compact = buildPipelineWithFragments(canaryStages, notifications).toJson(JsonOutputMode.COMPACT);
+        String canonical = buildPipelineWithFragments(canaryStages, notifications).toJson(JsonOutputMode.CANONICAL);
+
+        canaryStages.forEach(Stage::share);
+        NotificationList sharedNotifications = new NotificationList(NotificationLevel.PIPELINE, notifications).share();
+        for (int i = 0; i < 2; i++) { // the first iteration fills the caches, the second one reuses them
+            Pipeline pipeline = buildPipelineWithFragments(canaryStages, sharedNotifications);
+            Assertions.assertSame(sharedNotifications, pipeline.getNotifications());
+            Assertions.assertEquals(json, pipeline.toJson());
+            Assertions.assertEquals(compact, pipeline.toJson(JsonOutputMode.COMPACT));
+            Assertions.assertEquals(canonical, pipeline.toJson(JsonOutputMode.CANONICAL));
+        }
+    }
+
+    @Test
+    public void sharedFragmentsFollowReconfiguredPrettyPrinters() throws JsonProcessingException {
+        ObjectWriter writer = JsonHelper.getSortedObjectMapper().writer(new DefaultPrettyPrinter().withoutSpacesInObjectEntries());
+        List<Stage> canaryStages = CanaryHelper.buildStagesToLookupCanaryId("app", "canary-config", "default-id", "configId");
+        String json = writer.writeValueAsString(buildPipelineWithFragments(canaryStages, null));
+
+        canaryStages.forEach(Stage::share);
+        buildPipelineWithFragments(canaryStages, null).toJson(); // fills the caches with the default printer
+        Assertions.assertEquals(json, writer.writeValueAsString(buildPipelineWithFragments(canaryStages, null)));
+    }
+
+    private Pipeline buildPipelineWithFragments(final List<Stage> canaryStages, final List<Notification> notifications) {
+        List<Stage> stages = new ArrayList<>(canaryStages);
+        stages.add(Stage.builder()
+            .id("wait")
+            .name("Wait")
+            .type("wait")
+            .parentStage(canaryStages.get(1))
+            .build());
+        return Pipeline.builder()
+            .name("fragments")
+            .stages(stages)
+            .notifications(notifications)
+            .build();
+    }
 }
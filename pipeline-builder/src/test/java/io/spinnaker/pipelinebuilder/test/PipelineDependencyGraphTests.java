@@ -0,0 +1,257 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.spinnaker.pipelinebuilder.test;
+
+import io.spinnaker.pipelinebuilder.json.Pipeline;
+import io.spinnaker.pipelinebuilder.json.Stage;
+import io.spinnaker.pipelinebuilder.json.stages.model.StageTypes;
+import io.spinnaker.pipelinebuilder.json.triggers.PipelineTrigger;
+import io.spinnaker.pipelinebuilder.json.triggers.Trigger;
+import io.spinnaker.pipelinebuilder.pipelines.AnnotatedPipelineBuilder;
+import io.spinnaker.pipelinebuilder.pipelines.BulkGenerationReport;
+import io.spinnaker.pipelinebuilder.pipelines.BulkPipelineGenerator;
+import io.spinnaker.pipelinebuilder.pipelines.JsonPipelineBuilder;
+import io.spinnaker.pipelinebuilder.pipelines.PipelineDependencyGraph;
+import io.spinnaker.pipelinebuilder.pipelines.PipelineGenerationResult;
+import io.spinnaker.pipelinebuilder.pipelines.PipelineUniqueName;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the {@link PipelineDependencyGraph}.
+ */
+public class PipelineDependencyGraphTests {
+    private final BulkPipelineGenerator generator = BulkPipelineGenerator.builder().parallelism(4).build();
+
+    @Test
+    public void levelsFollowReferences() {
+        JsonPipelineBuilder a = getJsonPipelineBuilder("a", List.of(), List.of());
+        JsonPipelineBuilder b = getJsonPipelineBuilder("b", List.of("a"), List.of());
+        JsonPipelineBuilder c = getJsonPipelineBuilder("c", List.of(), List.of("b"));
+        JsonPipelineBuilder d = getJsonPipelineBuilder("d", List.of(), List.of());
+
+        PipelineDependencyGraph graph = PipelineDependencyGraph.build(List.of(c, b, a, d), generator);
+        graph.validate();
+
+        Assertions.assertFalse(graph.getReport().hasFailures());
+        Assertions.assertEquals(List.of(List.of(a, d), List.of(b), List.of(c)), graph.getBuildLevels());
+        Assertions.assertEquals(List.of(b), graph.getDependencies(c));
+        Assertions.assertEquals(List.of(c, b), graph.getDependents(a));
+        Assertions.assertEquals(List.of(), graph.getDependents(d));
+    }
+
+    @Test
+    public void rebuildOnlyAffectsDependents() {
+        JsonPipelineBuilder a = getJsonPipelineBuilder("a", List.of(), List.of());
+        JsonPipelineBuilder b = getJsonPipelineBuilder("b", List.of("a"), List.of());
+        JsonPipelineBuilder c = getJsonPipelineBuilder("c", List.of(), List.of("b"));
+        JsonPipelineBuilder d = getJsonPipelineBuilder("d", List.of(), List.of());
+        PipelineDependencyGraph graph = PipelineDependencyGraph.build(List.of(a, b, c, d), generator);
+
+        BulkGenerationReport report = graph.rebuild(List.of(b), generator);
+
+        Assertions.assertEquals(List.of(b, c), report.getResults().stream()
+            .map(PipelineGenerationResult::getBuilder)
+            .collect(Collectors.toList()));
+        Assertions.assertFalse(report.hasFailures());
+    }
+
+    @Test
+    public void danglingReferences() {
+        JsonPipelineBuilder a = getJsonPipelineBuilder("a", List.of("not-generated"), List.of());
+        JsonPipelineBuilder b = getJsonPipelineBuilder("b", List.of("a"), List.of());
+
+        PipelineDependencyGraph graph = PipelineDependencyGraph.build(List.of(a, b), generator);
+
+        Assertions.assertEquals(Map.of(a, Set.of(pipelineId("not-generated"))), graph.getDanglingReferences());
+        Assertions.assertEquals(List.of(List.of(a), List.of(b)), graph.getBuildLevels());
+        graph.validate(); // the pipeline may exist in Spinnaker
+    }
+
+    @Test
+    public void referencesToOtherApplicationsAreReported() {
+        String otherPipelineId = pipelineId("other-application-pipeline");
+        JsonPipelineBuilder a = getJsonPipelineBuilder("a", List.of(PipelineTrigger.builder()
+            .application("other-application")
+            .pipelineId(otherPipelineId)
+            .build()));
+        JsonPipelineBuilder b = getJsonPipelineBuilder("b", List.of("a"), List.of());
+
+        PipelineDependencyGraph graph = PipelineDependencyGraph.build(List.of(a, b), generator);
+        graph.validate();
+
+        Assertions.assertEquals(Map.of(a, Set.of(otherPipelineId)), graph.getDanglingReferences());
+        Assertions.assertEquals(List.of(List.of(a), List.of(b)), graph.getBuildLevels());
+    }
+
+    @Test
+    public void expressionsAreNotReferences() {
+        JsonPipelineBuilder a = getJsonPipelineBuilder("a", List.of(
+            PipelineTrigger.builder()
+                .application("app")
+                .pipelineId("#pipelineId(\"b\")")
+                .build(),
+            PipelineTrigger.builder()
+                .application("app")
+                .pipelineId("${parameters.upstream}")
+                .build()));
+
+        PipelineDependencyGraph graph = PipelineDependencyGraph.build(List.of(a), generator);
+        graph.validate();
+
+        Assertions.assertEquals(Map.of(), graph.getDanglingReferences());
+        Assertions.assertEquals(List.of(), graph.getDependencies(a));
+    }
+
+    @Test
+    public void triggerCycle() {
+        JsonPipelineBuilder a = getJsonPipelineBuilder("a", List.of("c"), List.of());
+        JsonPipelineBuilder b = getJsonPipelineBuilder("b", List.of("a"), List.of());
+        JsonPipelineBuilder c = getJsonPipelineBuilder("c", List.of("b"), List.of());
+        JsonPipelineBuilder d = getJsonPipelineBuilder("d", List.of("a"), List.of());
+
+        PipelineDependencyGraph graph = PipelineDependencyGraph.build(List.of(a, b, c, d), generator);
+
+        IllegalArgumentException exception = Assertions.assertThrows(IllegalArgumentException.class, graph::validate);
+        Assertions.assertEquals("Circular dependency found among the pipelines, each one referencing the next: a -> c -> b -> a",
+            exception.getMessage());
+        Assertions.assertThrows(IllegalStateException.class, graph::getBuildLevels);
+        Assertions.assertEquals(List.of(b, c, d), graph.getDependents(a));
+    }
+
+    @Test
+    public void rebuildIgnoresUnrelatedCycles() {
+        JsonPipelineBuilder a = getJsonPipelineBuilder("a", List.of("b"), List.of());
+        JsonPipelineBuilder b = getJsonPipelineBuilder("b", List.of("a"), List.of());
+        JsonPipelineBuilder c = getJsonPipelineBuilder("c", List.of(), List.of());
+        JsonPipelineBuilder d = getJsonPipelineBuilder("d", List.of("c"), List.of());
+        PipelineDependencyGraph graph = PipelineDependencyGraph.build(List.of(a, b, c, d), generator);
+
+        BulkGenerationReport report = graph.rebuild(List.of(c), generator);
+
+        Assertions.assertEquals(List.of(c, d), report.getResults().stream()
+            .map(PipelineGenerationResult::getBuilder)
+            .collect(Collectors.toList()));
+        IllegalStateException exception = Assertions.assertThrows(IllegalStateException.class, () -> graph.rebuild(List.of(a), generator));
+        Assertions.assertTrue(exception.getMessage().contains("a -> b -> a"), exception.getMessage());
+    }
+
+    @PipelineUniqueName("target")
+    public static class TargetBuilder extends AnnotatedPipelineBuilder {
+        @Override
+        protected Pipeline buildPipeline() {
+            return Pipeline.builder()
+                .name("target")
+                .build();
+        }
+    }
+
+    @PipelineUniqueName("lookup")
+    public static class LookupBuilder extends AnnotatedPipelineBuilder {
+        @Override
+        protected Pipeline buildPipeline() {
+            return Pipeline.builder()
+                .name("lookup")
+                .stage(Stage.builder()
+                    .name("find artifact")
+                    .type(StageTypes.FIND_ARTIFACT_FROM_EXECUTION)
+                    .context(Map.of("pipeline", computePipelineIdForClass(TargetBuilder.class)))
+                    .build())
+                .build();
+        }
+    }
+
+    @Test
+    public void computedIdsAreReferences() {
+        TargetBuilder target = new TargetBuilder();
+        LookupBuilder lookup = new LookupBuilder();
+
+        PipelineDependencyGraph graph = PipelineDependencyGraph.build(List.of(lookup, target), generator);
+
+        Assertions.assertEquals(List.of(target), graph.getDependencies(lookup));
+        Assertions.assertEquals(List.of(List.of(target), List.of(lookup)), graph.getBuildLevels());
+    }
+
+    @Test
+    public void pipelineIdsMustBeUnique() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> PipelineDependencyGraph.build(List.of(
+            getJsonPipelineBuilder("a", List.of(), List.of()),
+            getJsonPipelineBuilder("a", List.of(), List.of())), generator));
+    }
+
+    private static String pipelineId(final String uniqueName) {
+        return UUID.nameUUIDFromBytes(uniqueName.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    private JsonPipelineBuilder getJsonPipelineBuilder(final String uniqueName, final List<Trigger> triggers) {
+        return new JsonPipelineBuilder() {
+            @Override
+            public String getUniqueName() {
+                return uniqueName;
+            }
+
+            @Override
+            protected Pipeline buildPipeline() {
+                return Pipeline.builder()
+                    .name(uniqueName)
+                    .triggers(triggers)
+                    .build();
+            }
+        };
+    }
+
+    /**
+     * @param triggeredBy unique names of the pipelines triggering this one
+     * @param runs unique names of the pipelines run by this one
+     */
+    private JsonPipelineBuilder getJsonPipelineBuilder(final String uniqueName, final List<String> triggeredBy, final List<String> runs) {
+        return new JsonPipelineBuilder() {
+            @Override
+            public String getUniqueName() {
+                return uniqueName;
+            }
+
+            @Override
+            protected Pipeline buildPipeline() {
+                List<Trigger> triggers = triggeredBy.stream()
+                    .map(name -> PipelineTrigger.builder()
+                        .application("app")
+                        .pipelineId(pipelineId(name))
+                        .build())
+                    .collect(Collectors.toList());
+                List<Stage> stages = runs.stream()
+                    .map(name -> Stage.builder()
+                        .name("run " + name)
+                        .type(StageTypes.PIPELINE)
+                        .context(Map.of("application", "app", "pipeline", pipelineId(name)))
+                        .build())
+                    .collect(Collectors.toList());
+                return Pipeline.builder()
+                    .name(uniqueName)
+                    .triggers(triggers)
+                    .stages(stages)
+                    .build();
+            }
+        };
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.spinnaker.pipelinebuilder.test;
+
+import io.spinnaker.pipelinebuilder.json.Pipeline;
+import io.spinnaker.pipelinebuilder.json.Stage;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonHelper;
+import io.spinnaker.pipelinebuilder.json.triggers.CronTrigger;
+import io.spinnaker.pipelinebuilder.pipelines.PipelineChange;
+import io.spinnaker.pipelinebuilder.pipelines.PipelineDiff;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the {@link PipelineDiff}.
+ */
+public class PipelineDiffTests {
+    private final PipelineDiff pipelineDiff = PipelineDiff.builder().build();
+
+    @Test
+    public void identicalPipelinesHaveNoChanges() throws Exception {
+        Pipeline pipeline = getPipeline("https://example.com");
+        JsonNode existing = JsonHelper.getObjectMapper().readTree(pipeline.toJson());
+
+        Assertions.assertTrue(pipelineDiff.diff(pipeline, existing).isEmpty());
+        Assertions.assertFalse(pipelineDiff.differs(pipeline, existing));
+    }
+
+    @Test
+    public void reorderedStagesAndSpinnakerFieldsAreIgnored() throws Exception {
+        Pipeline pipeline = getPipeline("https://example.com");
+        ObjectNode existing = (ObjectNode) JsonHelper.getObjectMapper().readTree(pipeline.toJson());
+        ArrayNode stages = (ArrayNode) existing.get("stages");
+        stages.insert(0, stages.remove(1));
+        existing.put("updateTs", "1700000000000");
+        existing.put("index", 3);
+        existing.putArray("notifications");
+        ((ObjectNode) stages.get(0).get("context")).put("timeout", 30.0);
+
+        Assertions.assertEquals(List.of(), pipelineDiff.diff(pipeline, existing));
+    }
+
+    @Test
+    public void changesAreTyped() throws Exception {
+        ObjectNode existing = (ObjectNode) JsonHelper.getObjectMapper().readTree(getPipeline("https://old.example.com").toJson());
+        ((ObjectNode) existing.get("stages").get(0)).put("comments", "added in the UI");
+        ((ArrayNode) existing.get("stages")).addObject().put("refId", "99").put("name", "manual").put("type", "wait");
+        existing.remove("description");
+
+        List<PipelineChange> changes = pipelineDiff.diff(getPipeline("https://example.com"), existing);
+        Assertions.assertEquals(4, changes.size(), changes.toString());
+        assertChange(changes.get(0), PipelineChange.Type.ADDED, "description");
+        assertChange(changes.get(1), PipelineChange.Type.REMOVED, "stages[refId=1].comments");
+        assertChange(changes.get(2), PipelineChange.Type.MODIFIED, "stages[refId=2].context.url");
+        assertChange(changes.get(3), PipelineChange.Type.REMOVED, "stages[refId=99]");
+        Assertions.assertEquals("https://old.example.com", changes.get(2).getExistingValue().asText());
+        Assertions.assertEquals("https://example.com", changes.get(2).getGeneratedValue().asText());
+
+        Assertions.assertTrue(pipelineDiff.differs(getPipeline("https://example.com"), existing));
+    }
+
+    @Test
+    public void triggersAreMatchedById() throws Exception {
+        Pipeline pipeline = getPipeline("https://example.com");
+        ObjectNode existing = (ObjectNode) JsonHelper.getObjectMapper().readTree(pipeline.toJson());
+        ((ObjectNode) existing.get("triggers").get(0)).put("id", "another-trigger");
+
+        List<PipelineChange> changes = pipelineDiff.diff(pipeline, existing);
+        Assertions.assertEquals(2, changes.size(), changes.toString());
+        assertChange(changes.get(0), PipelineChange.Type.ADDED, "triggers[id=nightly]");
+        assertChange(changes.get(1), PipelineChange.Type.REMOVED, "triggers[id=another-trigger]");
+    }
+
+    private static void assertChange(final PipelineChange change, final PipelineChange.Type type, final String path) {
+        Assertions.assertEquals(type, change.getType(), change.toString());
+        Assertions.assertEquals(path, change.getPath(), change.toString());
+    }
+
+    private static Pipeline getPipeline(final String url) {
+        Stage wait = Stage.builder()
+            .id("1")
+            .name("wait")
+            .type("wait")
+            .build();
+        Stage webhook = Stage.builder()
+            .id("2")
+            .name("webhook")
+            .type("webhook")
+            .parentStage(wait)
+            .context(Map.of("url", url, "timeout", 30))
+            .build();
+        return Pipeline.builder()
+            .name("diff")
+            .description("compared with an existing pipeline")
+            .stages(List.of(wait, webhook))
+            .trigger(CronTrigger.builder().id("nightly").cronExpression("0 0 0 * * ?").build())
+            .build();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.spinnaker.pipelinebuilder.test;
+
+import io.spinnaker.pipelinebuilder.json.Pipeline;
+import io.spinnaker.pipelinebuilder.json.Stage;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonHelper;
+import io.spinnaker.pipelinebuilder.pipelines.ExportedPipeline;
+import io.spinnaker.pipelinebuilder.pipelines.PipelineExportReader;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the {@link PipelineExportReader}.
+ */
+public class PipelineExportReaderTests {
+
+    @Test
+    public void exportedPipelinesMatchGeneratedHashes() throws IOException {
+        List<Pipeline> pipelines = List.of(getPipeline("first", 10), getPipeline("second", 20));
+        PipelineExportReader reader = PipelineExportReader.builder().build();
+
+        List<ExportedPipeline> exported = readAll(reader, getExport(pipelines));
+
+        Assertions.assertEquals(2, exported.size());
+        for (int i = 0; i < pipelines.size(); i++) {
+            Pipeline pipeline = pipelines.get(i);
+            ExportedPipeline exportedPipeline = exported.get(i);
+            Assertions.assertEquals(i, exportedPipeline.getPosition());
+            Assertions.assertEquals(pipeline.getId(), exportedPipeline.getId());
+            Assertions.assertEquals("app", exportedPipeline.getApplication());
+            Assertions.assertEquals(pipeline.getName(), exportedPipeline.getName());
+            Assertions.assertEquals(reader.contentHash(pipeline), exportedPipeline.getContentHash()); // Front50 fields are ignored
+            Assertions.assertEquals(pipeline.toJson(), exportedPipeline.toPipeline().toJson());
+        }
+        Assertions.assertNotEquals(exported.get(0).getContentHash(), exported.get(1).getContentHash());
+    }
+
+    @Test
+    public void changedPipelinesHaveDifferentHashes() throws IOException {
+        PipelineExportReader reader = PipelineExportReader.builder().build();
+
+        ExportedPipeline exported = readAll(reader, getExport(List.of(getPipeline("first", 10)))).get(0);
+
+        Assertions.assertNotEquals(reader.contentHash(getPipeline("first", 11)), exported.getContentHash());
+    }
+
+    @Test
+    public void headersOnlySkipsContents() throws IOException {
+        PipelineExportReader reader = PipelineExportReader.builder()
+            .headersOnly(true)
+            .build();
+
+        List<ExportedPipeline> exported = readAll(reader, getExport(List.of(getPipeline("first", 10))));
+
+        Assertions.assertEquals("first-id", exported.get(0).getId());
+        Assertions.assertEquals("app", exported.get(0).getApplication());
+        Assertions.assertEquals("first", exported.get(0).getName());
+        Assertions.assertNull(exported.get(0).getContentHash());
+        Assertions.assertNull(exported.get(0).getContents());
+        Assertions.assertThrows(IllegalStateException.class, () -> exported.get(0).toPipeline());
+    }
+
+    @Test
+    public void invalidExportsAreRejected() throws IOException {
+        PipelineExportReader reader = PipelineExportReader.builder().build();
+
+        Assertions.assertThrows(IOException.class, () -> reader.read(toStream("{}")));
+        try (PipelineExportReader.ExportIterator iterator = reader.read(toStream("[\"not a pipeline\"]"))) {
+            Assertions.assertThrows(UncheckedIOException.class, iterator::hasNext);
+        }
+    }
+
+    private List<ExportedPipeline> readAll(final PipelineExportReader reader, final String export) throws IOException {
+        List<ExportedPipeline> exported = new ArrayList<>();
+        try (PipelineExportReader.ExportIterator iterator = reader.read(toStream(export))) {
+            iterator.forEachRemaining(exported::add);
+        }
+        return exported;
+    }
+
+    /**
+     * @return the pipelines as stored by Front50, with additional fields and empty lists
+     */
+    private String getExport(final List<Pipeline> pipelines) throws IOException {
+        ArrayNode export = JsonNodeFactory.instance.arrayNode();
+        for (int i = 0; i < pipelines.size(); i++) {
+            ObjectNode pipeline = (ObjectNode) JsonHelper.getObjectMapper().readTree(pipelines.get(i).toJson());
+            pipeline.put("index", i);
+            pipeline.put("updateTs", "1700000000000");
+            pipeline.putArray("parameterConfig");
+            export.add(pipeline);
+        }
+        return JsonHelper.getObjectMapper().writeValueAsString(export);
+    }
+
+    private Pipeline getPipeline(final String name, final int waitTime) {
+        Pipeline pipeline = Pipeline.builder()
+            .name(name)
+            .stage(Stage.builder()
+                .id("1")
+                .name("Wait")
+                .type("wait")
+                .context(Map.of("waitTime", waitTime))
+                .build())
+            .build();
+        pipeline.setId(name + "-id");
+        pipeline.setApplication("app");
+        return pipeline;
+    }
+
+    private static InputStream toStream(final String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
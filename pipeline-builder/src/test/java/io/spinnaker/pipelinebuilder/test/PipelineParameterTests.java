@@ -74,6 +74,21 @@ public class PipelineParameterTests {
         }
     }
 
+    @Test
+    public void frozenOptionsAreReused() {
+        PipelineParameter parameter = PipelineParameter.builder()
+            .name("param")
+            .options(List.of("foo", "bar"))
+            .build();
+        Map<String, Object> before = objectMapper.convertValue(parameter, Map.class);
+
+        parameter.freeze();
+
+        Assertions.assertSame(parameter.getWrappedOptions(), parameter.getWrappedOptions());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> parameter.getWrappedOptions().clear());
+        Assertions.assertEquals(before, objectMapper.convertValue(parameter, Map.class));
+    }
+
     /**
      * Generates all possible kinds of `PipelineParameter` objects, checking that null fields don't get serialized
      * but that all fields except `name` *are* nullable.
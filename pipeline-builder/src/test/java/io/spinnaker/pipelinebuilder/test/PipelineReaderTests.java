@@ -0,0 +1,205 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.spinnaker.pipelinebuilder.test;
+
+import io.spinnaker.pipelinebuilder.exceptions.PipelineBuilderException;
+import io.spinnaker.pipelinebuilder.json.Pipeline;
+import io.spinnaker.pipelinebuilder.json.PipelineLock;
+import io.spinnaker.pipelinebuilder.json.PipelineParameter;
+import io.spinnaker.pipelinebuilder.json.PipelineReader;
+import io.spinnaker.pipelinebuilder.json.Stage;
+import io.spinnaker.pipelinebuilder.json.artifacts.Base64ArtifactDefinition;
+import io.spinnaker.pipelinebuilder.json.artifacts.DockerImageArtifactDefinition;
+import io.spinnaker.pipelinebuilder.json.artifacts.ExpectedArtifact;
+import io.spinnaker.pipelinebuilder.json.artifacts.GitRepoArtifactDefinition;
+import io.spinnaker.pipelinebuilder.json.artifacts.KubernetesSecretArtifactDefinition;
+import io.spinnaker.pipelinebuilder.json.enums.FailureStrategy;
+import io.spinnaker.pipelinebuilder.json.notifications.EmailNotification;
+import io.spinnaker.pipelinebuilder.json.notifications.NotificationEvent;
+import io.spinnaker.pipelinebuilder.json.notifications.SlackNotification;
+import io.spinnaker.pipelinebuilder.json.triggers.CronTrigger;
+import io.spinnaker.pipelinebuilder.json.triggers.DockerTrigger;
+import io.spinnaker.pipelinebuilder.json.triggers.PipelineStatus;
+import io.spinnaker.pipelinebuilder.json.triggers.PipelineTrigger;
+import io.spinnaker.pipelinebuilder.json.triggers.WebhookTrigger;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the {@link PipelineReader}.
+ */
+public class PipelineReaderTests {
+
+    @Test
+    public void readPipelineMatchesWrittenPipeline() throws IOException {
+        Pipeline pipeline = getPipeline("reader");
+
+        Pipeline read = PipelineReader.readPipeline(pipeline.toJson());
+
+        Assertions.assertEquals(pipeline.toJson(), read.toJson());
+        Assertions.assertEquals("reader", read.getName());
+        Assertions.assertEquals("app", read.getApplication());
+        Assertions.assertEquals("pipeline-id", read.getId());
+    }
+
+    @Test
+    public void triggersArtifactsAndNotificationsUseTheirTypes() throws IOException {
+        Pipeline read = PipelineReader.readPipeline(getPipeline("types").toJson());
+
+        Assertions.assertTrue(read.getTriggers().get(0) instanceof CronTrigger);
+        Assertions.assertTrue(read.getTriggers().get(1) instanceof DockerTrigger);
+        Assertions.assertTrue(read.getTriggers().get(2) instanceof PipelineTrigger);
+        Assertions.assertTrue(read.getTriggers().get(3) instanceof WebhookTrigger);
+        Assertions.assertTrue(read.getExpectedArtifacts().get(0).getMatchArtifact() instanceof DockerImageArtifactDefinition);
+        Assertions.assertTrue(read.getExpectedArtifacts().get(1).getMatchArtifact() instanceof GitRepoArtifactDefinition);
+        Assertions.assertTrue(read.getExpectedArtifacts().get(2).getMatchArtifact() instanceof KubernetesSecretArtifactDefinition);
+        Assertions.assertTrue(read.getExpectedArtifacts().get(2).getDefaultArtifact() instanceof Base64ArtifactDefinition);
+        Assertions.assertTrue(read.getNotifications().get(0) instanceof EmailNotification);
+        Assertions.assertTrue(read.getNotifications().get(1) instanceof SlackNotification);
+    }
+
+    @Test
+    public void unknownStageFieldsArePreserved() throws IOException {
+        String json = "{\"name\": \"unknown-fields\", \"updateTs\": \"1700000000000\", \"stages\": [{"
+            + "\"refId\": \"1\", \"name\": \"Custom\", \"type\": \"someCustomStage\", \"requisiteStageRefIds\": [],"
+            + "\"custom\": {\"nested\": [1, 2, {\"deep\": true}]}, \"stageTimeoutMs\": 60000}]}";
+
+        Pipeline read = PipelineReader.readPipeline(json);
+        Stage stage = read.getStages().get(0);
+
+        Assertions.assertEquals("1", stage.getId());
+        Assertions.assertEquals("someCustomStage", stage.getType());
+        Assertions.assertEquals(Map.of("nested", List.of(1, 2, Map.of("deep", true))), stage.get("custom"));
+        Assertions.assertEquals(60000, ((Number) stage.get("stageTimeoutMs")).intValue());
+        Assertions.assertFalse(stage.containsKey("failPipeline")); // no failure option is added by the reader
+        Assertions.assertFalse(read.toJson().contains("updateTs")); // not part of the model
+    }
+
+    @Test
+    public void readPipelinesStreamsArrayElements() throws IOException {
+        List<Pipeline> pipelines = List.of(getPipeline("first"), getPipeline("second"), getPipeline("third"));
+        StringBuilder json = new StringBuilder("[");
+        for (Pipeline pipeline : pipelines) {
+            json.append(json.length() > 1 ? "," : "").append(pipeline.toJson());
+        }
+        json.append("]");
+
+        List<Pipeline> read = new ArrayList<>();
+        InputStream inputStream = new ByteArrayInputStream(json.toString().getBytes(StandardCharsets.UTF_8));
+        try (PipelineReader.PipelineIterator iterator = PipelineReader.readPipelines(inputStream)) {
+            iterator.forEachRemaining(read::add);
+        }
+
+        Assertions.assertEquals(pipelines.size(), read.size());
+        for (int i = 0; i < pipelines.size(); i++) {
+            Assertions.assertEquals(pipelines.get(i).toJson(), read.get(i).toJson());
+        }
+    }
+
+    @Test
+    public void readPipelinesRequiresAnArray() {
+        InputStream inputStream = new ByteArrayInputStream("{\"name\": \"not-an-array\"}".getBytes(StandardCharsets.UTF_8));
+        Assertions.assertThrows(IOException.class, () -> PipelineReader.readPipelines(inputStream));
+    }
+
+    @Test
+    public void invalidPipelinesAreRejected() {
+        Assertions.assertThrows(PipelineBuilderException.class, // no name
+            () -> PipelineReader.readPipeline("{\"stages\": []}"));
+        Assertions.assertThrows(PipelineBuilderException.class,
+            () -> PipelineReader.readPipeline("{\"name\": \"bad-trigger\", \"triggers\": [{\"type\": \"carrier-pigeon\"}]}"));
+        Assertions.assertThrows(PipelineBuilderException.class,
+            () -> PipelineReader.readPipeline("{\"name\": \"bad-stages\", \"stages\": {}}"));
+    }
+
+    private Pipeline getPipeline(final String name) {
+        Stage wait = Stage.builder()
+            .id("1")
+            .name("Wait")
+            .type("wait")
+            .context(Map.of("waitTime", 30, "nested", Map.of("list", List.of("a", "b"))))
+            .build();
+        Stage manual = Stage.builder()
+            .id("2")
+            .name("Manual judgment")
+            .type("manualJudgment")
+            .parentStage(wait)
+            .onFailure(FailureStrategy.HALT_BRANCH_AND_FAIL_PIPELINE)
+            .notification(SlackNotification.builder()
+                .channel("#approvals")
+                .message(Map.of(NotificationEvent.MANUAL_JUDGMENT, "Please approve"))
+                .build())
+            .build();
+
+        Map<NotificationEvent, String> emailMessage = new LinkedHashMap<>();
+        emailMessage.put(NotificationEvent.PIPELINE_FAILED, "Failed!");
+        emailMessage.put(NotificationEvent.PIPELINE_COMPLETE, "");
+
+        Pipeline pipeline = Pipeline.builder()
+            .name(name)
+            .description("Read back from JSON")
+            .keepWaitingPipelines(true)
+            .limitConcurrent(false)
+            .conditionalOnExpression("true")
+            .stages(List.of(wait, manual))
+            .parameters(List.of(PipelineParameter.builder()
+                .name("env")
+                .label("Environment")
+                .required(true)
+                .defaultValue("staging")
+                .options(List.of("staging", "production"))
+                .build()))
+            .triggers(List.of(
+                CronTrigger.builder().id("cron").cronExpression("0 0 * * * ?").build(),
+                DockerTrigger.builder().organization("org").registry("registry").repository("org/image").tag("latest").build(),
+                PipelineTrigger.builder().application("other").pipelineId("upstream").pipelineStatus(PipelineStatus.SUCCESSFUL).build(),
+                WebhookTrigger.builder().source("hook").payloadConstraints(Map.of("branch", "main")).build()))
+            .expectedArtifacts(List.of(
+                ExpectedArtifact.builder()
+                    .displayName("image")
+                    .matchArtifact(DockerImageArtifactDefinition.builder().name("org/image").reference("org/image:latest").build())
+                    .build(),
+                ExpectedArtifact.builder()
+                    .displayName("repo")
+                    .matchArtifact(GitRepoArtifactDefinition.builder().artifactAccount("git").reference("https://git/repo.git").version("main").subPath("charts").build())
+                    .build(),
+                ExpectedArtifact.builder()
+                    .displayName("secret")
+                    .matchArtifact(new KubernetesSecretArtifactDefinition(null, "k8s", "secret", "secret-v001"))
+                    .defaultArtifact(Base64ArtifactDefinition.builder().name("values").contents("key: value").build())
+                    .useDefaultArtifact(true)
+                    .build()))
+            .notifications(List.of(
+                EmailNotification.builder().address("team@example.com").message(emailMessage).build(),
+                SlackNotification.builder().channel("#team").message(Map.of(NotificationEvent.PIPELINE_STARTING, "")).build()))
+            .locked(PipelineLock.builder().allowUnlockUi(true).description("Managed in code").build())
+            .roles(List.of("admins"))
+            .tags(Map.of("team", "builders"))
+            .build();
+        pipeline.setId("pipeline-id");
+        pipeline.setApplication("app");
+        return pipeline;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2024 Apple, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.spinnaker.pipelinebuilder.test;
+
+import io.spinnaker.pipelinebuilder.json.Pipeline;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonHelper;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonOutputMode;
+import io.spinnaker.pipelinebuilder.pipelines.BulkUploadReport;
+import io.spinnaker.pipelinebuilder.pipelines.PipelineUploadResult;
+import io.spinnaker.pipelinebuilder.pipelines.PipelineUploader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the {@link PipelineUploader} against a local HTTP server.
+ */
+public class PipelineUploaderTests {
+    private HttpServer server;
+    private final Queue<String> requests = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger throttledResponses = new AtomicInteger();
+    private final AtomicInteger statusCode = new AtomicInteger(200);
+    private final AtomicReference<String> authorizationHeader = new AtomicReference<>();
+    private final AtomicReference<String> responseBody = new AtomicReference<>("{}");
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void pipelinesAreSavedOneByOne() {
+        BulkUploadReport report = getUploader(1).upload(getPipelines(5));
+
+        Assertions.assertFalse(report.hasFailures(), report.toSummary());
+        Assertions.assertEquals(5, report.getResults().size());
+        Assertions.assertEquals(5, requests.size());
+        Assertions.assertTrue(requests.stream().allMatch(request -> request.startsWith("/pipelines {")));
+        Assertions.assertEquals("Bearer token", authorizationHeader.get());
+    }
+
+    @Test
+    public void pipelinesAreSavedInBatches() throws IOException {
+        List<Pipeline> pipelines = getPipelines(5);
+        BulkUploadReport report = getUploader(2).upload(pipelines);
+
+        Assertions.assertFalse(report.hasFailures(), report.toSummary());
+        Assertions.assertEquals(3, requests.size());
+        int uploaded = 0;
+        for (String request : requests) {
+            Assertions.assertTrue(request.startsWith("/pipelines/bulksave ["), request);
+            JsonNode batch = JsonHelper.getObjectMapper().readTree(request.substring(request.indexOf(' ') + 1));
+            uploaded += batch.size();
+        }
+        Assertions.assertEquals(5, uploaded);
+        for (int i = 0; i < pipelines.size(); i++) {
+            Assertions.assertSame(pipelines.get(i), report.getResults().get(i).getPipeline());
+        }
+    }
+
+    @Test
+    public void sealedPipelinesSendTheirCachedJson() {
+        List<Pipeline> pipelines = getPipelines(2);
+        pipelines.forEach(Pipeline::seal);
+        BulkUploadReport report = getUploader(2).upload(pipelines);
+
+        Assertions.assertFalse(report.hasFailures(), report.toSummary());
+        Assertions.assertEquals(List.of("/pipelines/bulksave [" + pipelines.get(0).toJson(JsonOutputMode.COMPACT) + ","
+            + pipelines.get(1).toJson(JsonOutputMode.COMPACT) + "]"), List.copyOf(requests));
+    }
+
+    @Test
+    public void throttledRequestsAreRetried() {
+        throttledResponses.set(2);
+        BulkUploadReport report = getUploader(1).upload(getPipelines(1));
+
+        Assertions.assertFalse(report.hasFailures(), report.toSummary());
+        Assertions.assertEquals(3, report.getResults().get(0).getAttempts());
+        Assertions.assertEquals(200, report.getResults().get(0).getStatusCode());
+    }
+
+    @Test
+    public void clientErrorsAreNotRetried() {
+        statusCode.set(400);
+        BulkUploadReport report = getUploader(1).upload(getPipelines(2));
+
+        Assertions.assertTrue(report.hasFailures());
+        Assertions.assertEquals(2, report.getFailures().size());
+        Assertions.assertEquals(2, requests.size());
+        Assertions.assertEquals(1, report.getResults().get(0).getAttempts());
+        Assertions.assertEquals(400, report.getResults().get(0).getStatusCode());
+    }
+
+    @Test
+    public void pipelinesRejectedByBulkSaveAreFailures() {
+        responseBody.set("{\"successful_pipelines_count\": 2, \"successful_pipelines\": [\"pipeline-0\", \"pipeline-2\"],"
+            + " \"failed_pipelines_count\": 1, \"failed_pipelines\": [{\"id\": \"id-1\", \"name\": \"pipeline-1\", \"errorMsg\": \"invalid\"}]}");
+        BulkUploadReport report = getUploader(3).upload(getPipelines(3));
+
+        Assertions.assertEquals(1, report.getFailures().size());
+        PipelineUploadResult failure = report.getResults().get(1);
+        Assertions.assertFalse(failure.isSuccessful());
+        Assertions.assertEquals(200, failure.getStatusCode());
+        Assertions.assertTrue(failure.getFailure().getMessage().contains("invalid"), failure.getFailure().getMessage());
+    }
+
+    @Test
+    public void unexpectedExceptionsOnlyFailTheirBatch() {
+        BulkUploadReport report = PipelineUploader.builder()
+            .baseUrl(URI.create("http://localhost:" + server.getAddress().getPort()))
+            .headers(() -> Map.of("Authorization", "Bearer\ntoken")) // rejected by the HTTP client
+            .batchSize(2)
+            .build()
+            .upload(getPipelines(3));
+
+        Assertions.assertEquals(3, report.getFailures().size());
+        Assertions.assertTrue(report.getResults().get(0).getFailure() instanceof IllegalArgumentException);
+        Assertions.assertTrue(requests.isEmpty());
+    }
+
+    @Test
+    public void pipelinesMustHaveAnApplication() {
+        Pipeline pipeline = Pipeline.builder().name("no application").build();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> getUploader(1).upload(List.of(pipeline)));
+        Assertions.assertTrue(requests.isEmpty());
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        authorizationHeader.set(exchange.getRequestHeaders().getFirst("Authorization"));
+        int status;
+        if (throttledResponses.getAndUpdate(remaining -> Math.max(0, remaining - 1)) > 0) {
+            exchange.getResponseHeaders().add("Retry-After", "0");
+            status = 429;
+        } else {
+            requests.add(exchange.getRequestURI().getPath() + " " + body);
+            status = statusCode.get();
+        }
+        byte[] response = responseBody.get().getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, response.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(response);
+        }
+    }
+
+    private PipelineUploader getUploader(final int batchSize) {
+        return PipelineUploader.builder()
+            .baseUrl(URI.create("http://localhost:" + server.getAddress().getPort()))
+            .headers(() -> Map.of("Authorization", "Bearer token"))
+            .maxConcurrentRequests(4)
+            .batchSize(batchSize)
+            .initialBackoff(Duration.ofMillis(1))
+            .build();
+    }
+
+    private static List<Pipeline> getPipelines(final int count) {
+        return IntStream.range(0, count)
+            .mapToObj(i -> {
+                Pipeline pipeline = Pipeline.builder().name("pipeline-" + i).build();
+                pipeline.setId("id-" + i);
+                pipeline.setApplication("uploads");
+                return pipeline;
+            })
+            .collect(Collectors.toList());
+    }
+}
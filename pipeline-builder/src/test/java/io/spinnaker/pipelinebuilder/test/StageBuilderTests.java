@@ -16,13 +16,34 @@
 
 package io.spinnaker.pipelinebuilder.test;
 
+import io.spinnaker.pipelinebuilder.json.Pipeline;
 import io.spinnaker.pipelinebuilder.json.Stage;
 import io.spinnaker.pipelinebuilder.json.artifacts.InputArtifact;
+import io.spinnaker.pipelinebuilder.json.contexts.BakingManifestContext;
+import io.spinnaker.pipelinebuilder.json.contexts.CheckConditionsContext;
+import io.spinnaker.pipelinebuilder.json.contexts.ContextObject;
+import io.spinnaker.pipelinebuilder.json.contexts.EvalVarsContext;
+import io.spinnaker.pipelinebuilder.json.contexts.RunPipelineContext;
+import io.spinnaker.pipelinebuilder.json.contexts.WaitContext;
+import io.spinnaker.pipelinebuilder.json.contexts.WebhookContext;
+import io.spinnaker.pipelinebuilder.json.enums.FailureStrategy;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonHelper;
 import io.spinnaker.pipelinebuilder.json.notifications.EmailNotification;
 import io.spinnaker.pipelinebuilder.json.notifications.NotificationEvent;
+import io.spinnaker.pipelinebuilder.json.stages.model.EvaluateVariable;
+import io.spinnaker.pipelinebuilder.json.stages.model.ExpressionPrecondition;
 import io.spinnaker.pipelinebuilder.json.stages.model.StageTypes;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Duration;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -91,6 +112,160 @@ public class StageBuilderTests {
         Assertions.assertEquals("new type", stage.getType());
     }
 
+    @Test
+    public void stagesAreReadOnlyMaps() {
+        Stage parent = Stage.builder().name("parent").type("wait").build();
+        Stage stage = Stage.builder()
+            .name("child")
+            .type("wait")
+            .parentStage(parent)
+            .context(Map.of("waitTime", 30))
+            .build();
+
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> stage.put("waitTime", 60));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> stage.remove("name"));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> stage.getParentIds().add("other"));
+        Assertions.assertEquals(30, stage.get("waitTime"));
+    }
+
+    @Test
+    public void mapViewMatchesHashMap() throws JsonProcessingException {
+        Stage stage = Stage.builder()
+            .id("5")
+            .name("test")
+            .type("wait")
+            .parentStageIds(List.of("3", "4"))
+            .failStageAfter(Duration.ofMinutes(2))
+            .comments("some comments")
+            .context(Map.of("waitTime", 30, "skipWaitText", "skipped", "zone", "us-west-2"))
+            .build();
+        Map<String, Object> copy = new HashMap<>(stage);
+
+        Assertions.assertEquals(copy, stage);
+        Assertions.assertEquals(stage, copy);
+        Assertions.assertEquals(copy.hashCode(), stage.hashCode());
+        Assertions.assertEquals(120_000L, stage.get("stageTimeoutMs"));
+        Assertions.assertTrue(stage.containsKey("failPipeline"));
+        Assertions.assertFalse(stage.containsKey("failOnFailedExpressions"));
+        Assertions.assertNull(stage.get(42));
+
+        List<String> keys = List.copyOf(stage.keySet());
+        Assertions.assertEquals(keys.stream().sorted().collect(Collectors.toList()), keys);
+
+        ObjectMapper mapper = new ObjectMapper();
+        Assertions.assertEquals(mapper.readTree(mapper.writeValueAsString(copy)), mapper.readTree(mapper.writeValueAsString(stage)));
+    }
+
+    /**
+     * Builds stages from randomized builder inputs and compares each of them with a {@link HashMap} built from the
+     * same inputs the way stages were built before they stored their fields in typed fields and sorted arrays,
+     * including context keys that override the typed keys, with values of the expected type or not.
+     */
+    @Test
+    public void stagesMatchHashMapReference() throws JsonProcessingException {
+        Random random = new Random(42);
+        ObjectMapper sortedMapper = JsonHelper.getSortedObjectMapper();
+        for (int i = 0; i < 2_000; i++) {
+            String id = String.valueOf(i + 1);
+            String name = pick(random, "wait", "deploy");
+            String type = pick(random, "wait", "pipeline");
+            List<String> parentStageIds = pick(random, null, List.of(), List.of("a"), List.of("b", "c"));
+            Boolean failOnFailedExpressions = pick(random, null, null, true, false);
+            Boolean failPipeline = pick(random, null, null, true, false);
+            Boolean continuePipeline = pick(random, null, null, null, true);
+            Boolean completeOtherBranchesThenFail = pick(random, null, null, null, false);
+            FailureStrategy onFailure = pick(random, null, FailureStrategy.HALT_CURRENT_BRANCH, FailureStrategy.IGNORE_FAILURE,
+                FailureStrategy.buildCustom(null, true, null));
+            Duration failStageAfter = pick(random, null, Duration.ofMinutes(5), Duration.ofMillis(1500));
+            String conditionalOnExpression = pick(random, null, "", "parameters.enabled == 'true'");
+            String comments = pick(random, null, "", "some comments");
+            Map<String, Object> context = new HashMap<>();
+            for (int entries = random.nextInt(5); entries > 0; entries--) {
+                String key = pick(random, "refId", "name", "type", "requisiteStageRefIds", "failOnFailedExpressions", "failPipeline",
+                    "continuePipeline", "completeOtherBranchesThenFail", "stageTimeoutMs", "comments", "stageEnabled",
+                    "a", "waitTime", "zone", "~last");
+                Object value = pick(random, "override", 30, 60_000L, true, false, List.of("z"), Map.of("nested", 1), "");
+                context.put(key, value);
+            }
+
+            Stage stage = Stage.builder()
+                .id(id)
+                .name(name)
+                .type(type)
+                .parentStageIds(parentStageIds)
+                .failOnFailedExpressions(failOnFailedExpressions)
+                .failPipeline(failPipeline)
+                .continuePipeline(continuePipeline)
+                .completeOtherBranchesThenFail(completeOtherBranchesThenFail)
+                .onFailure(onFailure)
+                .failStageAfter(failStageAfter)
+                .conditionalOnExpression(conditionalOnExpression)
+                .comments(comments)
+                .context(context)
+                .build();
+
+            ReferenceStage reference = new ReferenceStage();
+            reference.put("name", name);
+            reference.put("refId", id);
+            reference.put("type", type);
+            reference.put("requisiteStageRefIds", parentStageIds != null ? parentStageIds : List.of());
+            Map<String, Boolean> flags = new HashMap<>();
+            flags.put("failOnFailedExpressions", failOnFailedExpressions);
+            flags.put("failPipeline", failPipeline);
+            flags.put("continuePipeline", continuePipeline);
+            flags.put("completeOtherBranchesThenFail", completeOtherBranchesThenFail);
+            if (flags.values().stream().allMatch(Objects::isNull)) {
+                FailureStrategy strategy = onFailure != null ? onFailure : FailureStrategy.HALT_ENTIRE_PIPELINE;
+                flags.put("failPipeline", strategy.getFailPipeline());
+                flags.put("continuePipeline", strategy.getContinuePipeline());
+                flags.put("completeOtherBranchesThenFail", strategy.getCompleteOtherBranchesThenFail());
+            }
+            flags.forEach((key, value) -> {
+                if (value != null) {
+                    reference.put(key, value);
+                }
+            });
+            if (conditionalOnExpression != null && !conditionalOnExpression.isEmpty()) {
+                reference.put("stageEnabled", Map.of("expression", conditionalOnExpression, "type", "expression"));
+            }
+            if (failStageAfter != null) {
+                reference.put("stageTimeoutMs", failStageAfter.toMillis());
+            }
+            if (comments != null && !comments.isEmpty()) {
+                reference.put("comments", comments);
+            }
+            reference.putAll(context);
+
+            String description = "stage " + id + " with context " + context;
+            Assertions.assertEquals(reference, stage, description);
+            Assertions.assertEquals(stage, reference, description);
+            Assertions.assertEquals(reference.hashCode(), stage.hashCode(), description);
+            Assertions.assertEquals(reference.size(), stage.size(), description);
+            for (String key : Stream.concat(reference.keySet().stream(), Stream.of("missing", "stageTimeoutMs", "failPipeline"))
+                    .collect(Collectors.toList())) {
+                Assertions.assertEquals(reference.containsKey(key), stage.containsKey(key), description + ", key " + key);
+                Assertions.assertEquals(reference.get(key), stage.get(key), description + ", key " + key);
+            }
+            Assertions.assertEquals(List.copyOf(new TreeMap<>(reference).keySet()), List.copyOf(stage.keySet()), description);
+            if (reference.get("refId") instanceof String) {
+                Assertions.assertEquals(reference.get("refId"), stage.getId(), description);
+            }
+            Assertions.assertEquals(sortedMapper.writeValueAsString(reference), sortedMapper.writeValueAsString(stage), description);
+        }
+    }
+
+    @SafeVarargs
+    private static <T> T pick(final Random random, final T... values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    /**
+     * A stage as it was stored before {@link Stage} had typed fields: a {@link HashMap} with the same JSON inclusion.
+     */
+    @JsonInclude(Include.NON_EMPTY)
+    private static class ReferenceStage extends HashMap<String, Object> {
+    }
+
     @Test
     public void stageBuilderRejectsPipelineNotifications() throws Throwable {
         for (final NotificationEvent event : NotificationEvent.values()) {
@@ -173,4 +348,52 @@ public class StageBuilderTests {
         Assertions.assertTrue(List.class.isAssignableFrom(stage.get("inputArtifacts").getClass()));
         Assertions.assertEquals(2, ((List<?>) stage.get("inputArtifacts")).size());
     }
+
+    @ParameterizedTest
+    @MethodSource("provideContextObjects")
+    public void contextObjectMatchesJsonRoundTrip(ContextObject contextObject) throws JsonProcessingException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, Object> roundTripContext = objectMapper.readValue(objectMapper.writeValueAsString(contextObject), Map.class);
+
+        Stage fromObject = Stage.builder()
+            .id("1")
+            .name("test")
+            .type("test")
+            .contextObject(contextObject)
+            .build();
+        Stage fromMap = Stage.builder()
+            .id("1")
+            .name("test")
+            .type("test")
+            .context(roundTripContext)
+            .build();
+
+        Assertions.assertEquals(Pipeline.builder().name("p").stage(fromMap).build().toJson(),
+            Pipeline.builder().name("p").stage(fromObject).build().toJson());
+    }
+
+    private static Stream<ContextObject> provideContextObjects() {
+        return Stream.of(
+            WebhookContext.builder()
+                .method(WebhookContext.Method.POST)
+                .url("https://api.example.com/v1/endpoint")
+                .headers(Map.of("Accept", "application/json"))
+                .failFastHttpStatuses(List.of(404, 503))
+                .payload(Map.of("count", 3, "ratio", 0.25, "nested", Map.of("flag", true)))
+                .build(),
+            RunPipelineContext.builder()
+                .application("my-application")
+                .pipelineId("5f0f1ba7-3a5b-3c36-8b4c-3ed5b3c7a2a1")
+                .parameters(Map.of("foo", "123"))
+                .build(),
+            BakingManifestContext.builder()
+                .account("my-account")
+                .templateRenderer("HELM3")
+                .inputArtifacts(List.of(InputArtifact.builder().id("input").build()))
+                .helmOptions(new BakingManifestContext.HelmOptions("my-namespace", "my-output"))
+                .build(),
+            EvalVarsContext.ofVariables(List.of(new EvaluateVariable("answer", "${ 6 * 7 }"))),
+            CheckConditionsContext.ofConditions(List.of(new ExpressionPrecondition("${ true }", "never fails"))),
+            WaitContext.ofSeconds(30));
+    }
 }
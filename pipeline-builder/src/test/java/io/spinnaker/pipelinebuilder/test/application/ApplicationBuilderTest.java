@@ -22,11 +22,15 @@ import io.spinnaker.pipelinebuilder.json.application.ApplicationPermissions;
 import io.spinnaker.pipelinebuilder.json.application.DataSources;
 import io.spinnaker.pipelinebuilder.json.application.DataSourcesType;
 import io.spinnaker.pipelinebuilder.json.application.ProviderSettings;
+import io.spinnaker.pipelinebuilder.json.helpers.JsonOutputMode;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -113,4 +117,32 @@ public class ApplicationBuilderTest {
 
         Assertions.assertEquals(appAsMap, expectedAsMap);
     }
+
+    @Test
+    public void applicationWriteJsonMatchesToJson() throws IOException {
+        Application application = Application.builder().name("app").email("some@example.com").build();
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        application.writeJson(outputStream);
+        Assertions.assertEquals(application.toJson(), outputStream.toString(StandardCharsets.UTF_8));
+
+        StringWriter writer = new StringWriter();
+        application.writeJson(writer);
+        Assertions.assertEquals(application.toJson(), writer.toString());
+    }
+
+    @Test
+    public void applicationOutputModes() throws IOException {
+        Application application = Application.builder().name("app").email("some@example.com").build();
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        String compact = application.toJson(JsonOutputMode.COMPACT);
+        Assertions.assertFalse(compact.contains("\n"));
+        Assertions.assertEquals(objectMapper.readTree(application.toJson()), objectMapper.readTree(compact));
+
+        StringWriter writer = new StringWriter();
+        application.writeJson(writer, JsonOutputMode.CANONICAL);
+        Assertions.assertEquals(application.toJson(JsonOutputMode.CANONICAL), writer.toString());
+        Assertions.assertEquals(objectMapper.readTree(compact), objectMapper.readTree(writer.toString()));
+    }
 }